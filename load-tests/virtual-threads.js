@@ -0,0 +1,62 @@
+// Throughput and tail latency of blocking JDBC endpoints at high concurrency.
+// Run the same script against the service with VIRTUAL_THREADS_ENABLED=false and =true
+// (same DB_POOL_SIZE, same database) and compare http_reqs/s and the p(99) of http_req_duration.
+// Start the service with RATE_LIMIT_ENABLED=false: every VU shares this host's address, so the per-address limit
+// on devices/exists would answer almost everything with 429 and the run would measure the rate limiter instead.
+//
+//   k6 run -e BASE_URL=http://localhost:9000 -e USERNAME=admin@abv.bg -e PASSWORD=... load-tests/virtual-threads.js
+//
+// While the virtual-thread run is going, watch the log for "Virtual thread pinned" warnings and the
+// jvm.threads.virtual.pinned metric. Pinned carriers show up as a p99 that grows with VUS.
+import http from 'k6/http';
+import { check } from 'k6';
+
+const BASE_URL = __ENV.BASE_URL || 'http://localhost:9000';
+const VUS = parseInt(__ENV.VUS || '800');
+
+export const options = {
+    scenarios: {
+        public_lookups: {
+            executor: 'constant-vus',
+            vus: VUS,
+            duration: __ENV.DURATION || '2m',
+            exec: 'publicLookups',
+        },
+        admin_listing: {
+            executor: 'constant-vus',
+            vus: Math.max(1, Math.floor(VUS / 10)),
+            duration: __ENV.DURATION || '2m',
+            exec: 'adminListing',
+        },
+    },
+    summaryTrendStats: ['avg', 'p(50)', 'p(95)', 'p(99)', 'max'],
+    // A run with rate-limited or failed requests is not comparable, so it fails instead of reporting numbers.
+    thresholds: {
+        checks: ['rate>0.99'],
+    },
+};
+
+export function setup() {
+    const res = http.post(`${BASE_URL}/api/v1/users/login`,
+        JSON.stringify({ username: __ENV.USERNAME, password: __ENV.PASSWORD }),
+        { headers: { 'Content-Type': 'application/json' } });
+    check(res, { 'logged in': (r) => r.status === 200 });
+    return { token: res.json('token') };
+}
+
+export function publicLookups() {
+    const serial = `${__ENV.SERIAL_PREFIX || 'AA'}${Math.floor(Math.random() * 1000)}`;
+    const res = http.get(`${BASE_URL}/api/v1/devices/exists/${serial}`, { tags: { name: 'devices/exists' } });
+    check(res, {
+        'not rate limited': (r) => r.status !== 429,
+        'not a server error': (r) => r.status < 500,
+    });
+}
+
+export function adminListing(data) {
+    const res = http.get(`${BASE_URL}/api/v1/devices/scroll?size=50`, {
+        headers: { Authorization: `Bearer ${data.token}` },
+        tags: { name: 'devices/scroll' },
+    });
+    check(res, { 'listed': (r) => r.status === 200 });
+}
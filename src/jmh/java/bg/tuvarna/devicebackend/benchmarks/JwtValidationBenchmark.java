@@ -0,0 +1,81 @@
+package bg.tuvarna.devicebackend.benchmarks;
+
+import bg.tuvarna.devicebackend.config.JwtKeyRing;
+import bg.tuvarna.devicebackend.config.JwtService;
+import bg.tuvarna.devicebackend.models.entities.User;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import javax.crypto.SecretKey;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token validation cost of one authenticated request.
+ * {@code perRequestParsers} repeats what the filter used to do: isTokenExpired, extractId and isTokenValid
+ * (which extracted the id and checked the expiry again), each building a new parser and verifying the signature.
+ * {@code singleParse} is the current path: one verification with the shared parser, then claim checks.
+ * Run with {@code ./gradlew jmh}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class JwtValidationBenchmark {
+    private JwtService jwtService;
+    private User user;
+    private String token;
+
+    private SecretKey legacyKey;
+    private String legacyToken;
+
+    @Setup
+    public void setUp() {
+        jwtService = new JwtService(JwtKeyRing.ephemeral(), new SimpleMeterRegistry());
+        user = User.builder().id(42L).build();
+        token = jwtService.generateToken(user);
+
+        legacyKey = Keys.secretKeyFor(SignatureAlgorithm.HS256);
+        legacyToken = Jwts.builder()
+                .setSubject("42")
+                .setIssuedAt(new Date())
+                .setExpiration(Date.from(Instant.now().plus(2L, ChronoUnit.HOURS)))
+                .signWith(legacyKey)
+                .compact();
+    }
+
+    @Benchmark
+    public void perRequestParsers(Blackhole blackhole) {
+        blackhole.consume(legacyParse().getExpiration());
+        blackhole.consume(legacyParse().getSubject());
+        blackhole.consume(Long.parseLong(legacyParse().getSubject()) == user.getId());
+        blackhole.consume(legacyParse().getExpiration());
+    }
+
+    @Benchmark
+    public void singleParse(Blackhole blackhole) {
+        Claims claims = jwtService.parseClaims(token);
+        blackhole.consume(claims.getSubject());
+        blackhole.consume(jwtService.isTokenValid(claims, user));
+    }
+
+    private Claims legacyParse() {
+        return Jwts.parserBuilder()
+                .setSigningKey(legacyKey)
+                .build()
+                .parseClaimsJws(legacyToken)
+                .getBody();
+    }
+}
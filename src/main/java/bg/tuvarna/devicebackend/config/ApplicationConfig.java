@@ -1,41 +1,52 @@
 package bg.tuvarna.devicebackend.config;
 
+import bg.tuvarna.devicebackend.repositories.UserRepository;
 import lombok.AllArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.AuthenticationProvider;
 import org.springframework.security.authentication.ProviderManager;
-import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
 import java.util.Collections;
+import java.util.Map;
 
 @Configuration
 @AllArgsConstructor
 public class ApplicationConfig {
-    private final UserDetailsServiceConfig userDetailsService;
+    private static final String BCRYPT = "bcrypt";
+
+    private final UserRepository userRepository;
+    private final PasswordHashingExecutor passwordHashingExecutor;
 
     @Bean
-    public AuthenticationProvider authenticationProvider() {
-        DaoAuthenticationProvider authProvider = new DaoAuthenticationProvider();
-        authProvider.setUserDetailsService(userDetailsService);
-        authProvider.setPasswordEncoder(passwordEncoder());
-        return authProvider;
+    public AuthenticationProvider authenticationProvider(PasswordEncoder passwordEncoder) {
+        return new LoginAuthenticationProvider(userRepository, passwordEncoder);
     }
 
     @Bean
-    public AuthenticationManager authenticationManager() {
+    public AuthenticationManager authenticationManager(AuthenticationProvider authenticationProvider) {
         return new ProviderManager(
                 Collections.singletonList(
-                        authenticationProvider()
+                        authenticationProvider
                 )
         );
     }
 
+    /**
+     * Stored hashes carry their algorithm as an {@code {id}} prefix and their cost inside the hash.
+     * Hashes from before the prefix was introduced are plain BCrypt and are still accepted;
+     * they and hashes with a different cost are rewritten on the next successful login.
+     */
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder(10);
+    public PasswordEncoder passwordEncoder(@Value("${security.password-hashing.bcrypt-strength:10}") int bcryptStrength) {
+        CostAwareBCryptPasswordEncoder bcrypt = new CostAwareBCryptPasswordEncoder(bcryptStrength);
+        DelegatingPasswordEncoder delegating = new DelegatingPasswordEncoder(BCRYPT, Map.of(BCRYPT, bcrypt));
+        delegating.setDefaultPasswordEncoderForMatches(bcrypt);
+
+        return new OffloadedPasswordEncoder(delegating, passwordHashingExecutor);
     }
 }
\ No newline at end of file
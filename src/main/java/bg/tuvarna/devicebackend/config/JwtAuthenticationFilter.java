@@ -1,12 +1,19 @@
 package bg.tuvarna.devicebackend.config;
 
+import bg.tuvarna.devicebackend.controllers.exceptions.CustomException;
+import bg.tuvarna.devicebackend.controllers.exceptions.ErrorCode;
+import bg.tuvarna.devicebackend.models.dtos.PrincipalVO;
 import bg.tuvarna.devicebackend.models.entities.User;
+import bg.tuvarna.devicebackend.services.PrincipalCache;
+import bg.tuvarna.devicebackend.services.TokenVersions;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
@@ -19,7 +26,10 @@ import java.io.IOException;
 @RequiredArgsConstructor
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
     private final JwtService jwtService;
-    private final UserDetailsServiceConfig userDetailsService;
+    private final PrincipalCache principalCache;
+    private final TokenVersions tokenVersions;
+    @Value("${auth.stateless.enabled:false}")
+    private boolean stateless;
 
     @Override
     protected void doFilterInternal(
@@ -38,12 +48,23 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
         jwt = authHeader.substring(7);
         try {
-            if (!jwtService.isTokenExpired(jwt)) {
-                id = jwtService.extractId(jwt);
+            Claims claims = jwtService.parseClaims(jwt);
+            if (claims != null) {
+                id = claims.getSubject();
 
                 if (id != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-                    User user = userDetailsService.loadUserByUsername(id);
-                    if (jwtService.isTokenValid(jwt, user)) {
+                    // In stateless mode the role and version claims decide authorization and no user is loaded,
+                    // so revocations and role changes only take effect once the access token expires.
+                    User user = stateless ? jwtService.extractPrincipal(claims) : null;
+                    if (user == null) {
+                        PrincipalVO principal = principalCache.get(Long.valueOf(id));
+                        Integer version = jwtService.extractVersion(claims);
+                        if (version != null && !tokenVersions.isCurrent(principal, version, jwtService.extractRole(claims))) {
+                            throw new CustomException("Token revoked", ErrorCode.Failed);
+                        }
+                        user = principal.toUser();
+                    }
+                    if (jwtService.isTokenValid(claims, user)) {
                         UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities());
                         authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
                         SecurityContextHolder.getContext().setAuthentication(authToken);
@@ -0,0 +1,163 @@
+package bg.tuvarna.devicebackend.config;
+
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.SecretKey;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+
+/**
+ * HMAC keys for signing and verifying JWTs, identified by the token's {@code kid} header.
+ * Keys come from {@code auth.jwt.keys} ({@code kid=base64Secret,...}) or from the properties file at
+ * {@code auth.jwt.keys-file}, whose {@code signing-key-id} entry picks the key new tokens are signed with.
+ * The file is re-read every {@code auth.jwt.keys-reload-interval}, so a key is rotated on every node without a restart:
+ * add the new key, switch {@code signing-key-id} to it, and drop the old key once its tokens have expired.
+ * Without any configured key a random one is generated, which only suits a single node.
+ */
+@Component
+public class JwtKeyRing {
+    static final String SIGNING_KEY_ID = "signing-key-id";
+
+    private static final Logger logger = LoggerFactory.getLogger(JwtKeyRing.class);
+
+    private final String keysFile;
+    private final String inlineKeys;
+    private final String signingKeyId;
+    private volatile Ring ring;
+
+    public JwtKeyRing(
+            @Value("${auth.jwt.keys-file:}") String keysFile,
+            @Value("${auth.jwt.keys:}") String inlineKeys,
+            @Value("${auth.jwt.signing-key-id:}") String signingKeyId
+    ) {
+        this.keysFile = keysFile;
+        this.inlineKeys = inlineKeys;
+        this.signingKeyId = signingKeyId;
+        this.ring = load();
+        logger.info("JWT key ring loaded with keys {}, signing with {}", ring.keys().keySet(), ring.signingKeyId());
+    }
+
+    /**
+     * A ring with a single random key, for tools and tests that run without configuration.
+     */
+    public static JwtKeyRing ephemeral() {
+        return new JwtKeyRing("", "", "");
+    }
+
+    public String signingKeyId() {
+        return ring.signingKeyId();
+    }
+
+    public SecretKey signingKey() {
+        Ring current = ring;
+        return current.keys().get(current.signingKeyId());
+    }
+
+    /**
+     * Returns the key for the id, or null when the key is unknown or was retired.
+     */
+    public SecretKey verificationKey(String keyId) {
+        return keyId != null ? ring.keys().get(keyId) : null;
+    }
+
+    /**
+     * Picks up keys added to or removed from the keys file. A broken file keeps the previous keys.
+     */
+    @Scheduled(
+            initialDelayString = "${auth.jwt.keys-reload-interval:PT1M}",
+            fixedDelayString = "${auth.jwt.keys-reload-interval:PT1M}"
+    )
+    public void reload() {
+        if (keysFile.isBlank()) {
+            return;
+        }
+
+        Ring loaded;
+        try {
+            loaded = load();
+        } catch (RuntimeException e) {
+            logger.error("Keeping the current JWT keys, failed to reload {}: {}", keysFile, e.getMessage());
+            return;
+        }
+
+        if (!loaded.equals(ring)) {
+            ring = loaded;
+            logger.info("JWT key ring reloaded with keys {}, signing with {}", loaded.keys().keySet(), loaded.signingKeyId());
+        }
+    }
+
+    private Ring load() {
+        Map<String, String> secrets = new LinkedHashMap<>();
+        String signing = signingKeyId;
+
+        if (!inlineKeys.isBlank()) {
+            for (String entry : inlineKeys.split(",")) {
+                String[] parts = entry.trim().split("=", 2);
+                if (parts.length != 2 || parts[0].isBlank()) {
+                    throw new IllegalStateException("JWT keys must be listed as kid=base64Secret");
+                }
+                secrets.put(parts[0].trim(), parts[1].trim());
+            }
+        }
+
+        if (!keysFile.isBlank()) {
+            Properties properties = readKeysFile();
+            for (String name : properties.stringPropertyNames()) {
+                if (!SIGNING_KEY_ID.equals(name)) {
+                    secrets.put(name, properties.getProperty(name).trim());
+                }
+            }
+            String fileSigning = properties.getProperty(SIGNING_KEY_ID);
+            if (fileSigning != null && !fileSigning.isBlank()) {
+                signing = fileSigning.trim();
+            }
+        }
+
+        if (secrets.isEmpty()) {
+            logger.warn("No JWT keys configured, tokens are signed with a random key and won't survive a restart");
+            String keyId = "ephemeral-" + UUID.randomUUID();
+            return new Ring(keyId, Map.of(keyId, Keys.secretKeyFor(SignatureAlgorithm.HS256)));
+        }
+
+        Map<String, SecretKey> keys = new LinkedHashMap<>();
+        secrets.forEach((keyId, secret) -> keys.put(keyId, Keys.hmacShaKeyFor(Decoders.BASE64.decode(secret))));
+
+        if (signing == null || signing.isBlank()) {
+            if (keys.size() > 1) {
+                throw new IllegalStateException("Several JWT keys are configured, set " + SIGNING_KEY_ID + " to pick the signing key");
+            }
+            signing = keys.keySet().iterator().next();
+        }
+        if (!keys.containsKey(signing)) {
+            throw new IllegalStateException("JWT signing key " + signing + " is not configured");
+        }
+
+        return new Ring(signing, Map.copyOf(keys));
+    }
+
+    private Properties readKeysFile() {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(Path.of(keysFile))) {
+            properties.load(reader);
+        } catch (IOException e) {
+            throw new IllegalStateException("Can't read JWT keys file " + keysFile, e);
+        }
+        return properties;
+    }
+
+    private record Ring(String signingKeyId, Map<String, SecretKey> keys) {
+    }
+}
@@ -3,24 +3,69 @@ package bg.tuvarna.devicebackend.config;
 import bg.tuvarna.devicebackend.controllers.exceptions.CustomException;
 import bg.tuvarna.devicebackend.controllers.exceptions.ErrorCode;
 import bg.tuvarna.devicebackend.models.entities.User;
+import bg.tuvarna.devicebackend.models.enums.UserRole;
 import io.jsonwebtoken.*;
-import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.security.SignatureException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import javax.crypto.SecretKey;
+import java.security.Key;
+import java.time.Duration;
 import java.time.Instant;
-import java.time.temporal.ChronoUnit;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Objects;
 import java.util.function.Function;
 
 @Service
 public class JwtService {
+    public static final String ROLE_CLAIM = "role";
+    public static final String VERSION_CLAIM = "ver";
+    public static final Duration DEFAULT_ACCESS_TOKEN_TTL = Duration.ofMinutes(15);
+
     private static final Logger logger = LoggerFactory.getLogger(JwtService.class);
-    private final SecretKey key = Keys.secretKeyFor(SignatureAlgorithm.HS256);
+    private final JwtKeyRing keyRing;
+    // Parsers are immutable and thread-safe, so one instance serves every request.
+    // The key is resolved from the token's kid header on every parse, which follows key ring reloads.
+    private final JwtParser parser;
+    private final Duration accessTokenTtl;
+    private final Timer validationTimer;
+
+    public JwtService(JwtKeyRing keyRing, MeterRegistry meterRegistry) {
+        this(keyRing, meterRegistry, DEFAULT_ACCESS_TOKEN_TTL);
+    }
+
+    @Autowired
+    public JwtService(
+            JwtKeyRing keyRing,
+            MeterRegistry meterRegistry,
+            @Value("${auth.jwt.access-token-ttl:PT15M}") Duration accessTokenTtl
+    ) {
+        this.keyRing = keyRing;
+        this.accessTokenTtl = accessTokenTtl;
+        this.validationTimer = Timer.builder("jwt.validation")
+                .description("Time to verify a JWT signature and parse its claims")
+                .register(meterRegistry);
+        this.parser = Jwts.parserBuilder()
+                .setSigningKeyResolver(new SigningKeyResolverAdapter() {
+                    @Override
+                    public Key resolveSigningKey(JwsHeader header, Claims claims) {
+                        SecretKey key = keyRing.verificationKey(header.getKeyId());
+                        if (key == null) {
+                            throw new SignatureException("Unknown JWT signing key " + header.getKeyId());
+                        }
+                        return key;
+                    }
+                })
+                .build();
+    }
 
     public String extractId(String token) {
         return extractClaim(token, Claims::getSubject);
@@ -35,45 +80,88 @@ public class JwtService {
         return generateToken(new HashMap<>(), user);
     }
 
+    /**
+     * Token carrying the role and version claims, so stateless mode can authorize without loading the user
+     * and the default mode can reject it once the user's token version or role changes.
+     */
+    public String generateAccessToken(User principal, int version) {
+        Map<String, Object> claims = new HashMap<>();
+        claims.put(ROLE_CLAIM, principal.getRole().name());
+        claims.put(VERSION_CLAIM, version);
+        return generateToken(claims, principal);
+    }
+
     public String generateToken(Map<String, Object> extraClaims, User user) {
         return Jwts
                 .builder()
                 .setClaims(extraClaims)
                 .setSubject(user.getId().toString())
                 .setIssuedAt(new Date())
-                .setExpiration(Date.from(Instant.now().plus(2L, ChronoUnit.HOURS)))//1 hour
-                .signWith(key)
+                .setExpiration(Date.from(Instant.now().plus(accessTokenTtl)))
+                .setHeaderParam(JwsHeader.KEY_ID, keyRing.signingKeyId())
+                .signWith(keyRing.signingKey())
                 .compact();
     }
 
+    /**
+     * Verifies the signature and expiry of the token once and returns its claims.
+     * Returns null for an expired token, so callers can leave the request unauthenticated.
+     */
+    public Claims parseClaims(String token) {
+        try {
+            return extractAllClaims(token);
+        } catch (ExpiredJwtException e) {
+            return null;
+        }
+    }
+
     public boolean isTokenValid(String token, User user) {
-        final long id = Long.parseLong(extractId(token));
-        return (id == user.getId()) && !isTokenExpired(token);
+        Claims claims = parseClaims(token);
+        return claims != null && isTokenValid(claims, user);
     }
 
-    public boolean isTokenExpired(String token) {
-        return extractExpiration(token) == null;
+    /**
+     * Checks already parsed and verified claims against the loaded user, without parsing the token again.
+     */
+    public boolean isTokenValid(Claims claims, User user) {
+        return Objects.equals(Long.valueOf(claims.getSubject()), user.getId());
     }
 
-    private Date extractExpiration(String token) {
-        try {
-            return extractClaim(token, Claims::getExpiration);
-        } catch (ExpiredJwtException e) {
+    /**
+     * Builds the principal from the role and version claims alone, without loading the user.
+     * Returns null for tokens minted without those claims.
+     */
+    public User extractPrincipal(Claims claims) {
+        UserRole role = extractRole(claims);
+        if (role == null || claims.get(VERSION_CLAIM) == null) {
             return null;
         }
+
+        return User.builder()
+                .id(Long.valueOf(claims.getSubject()))
+                .role(role)
+                .build();
+    }
+
+    public UserRole extractRole(Claims claims) {
+        String role = claims.get(ROLE_CLAIM, String.class);
+        return role != null ? UserRole.valueOf(role) : null;
+    }
+
+    public Integer extractVersion(Claims claims) {
+        return claims.get(VERSION_CLAIM, Integer.class);
+    }
+
+    public boolean isTokenExpired(String token) {
+        return parseClaims(token) == null;
     }
 
     private Claims extractAllClaims(String token) {
         try {
-            return Jwts
-                    .parserBuilder()
-                    .setSigningKey(key)
-                    .build()
-                    .parseClaimsJws(token)
-                    .getBody();
+            return validationTimer.record(() -> parser.parseClaimsJws(token).getBody());
         } catch (MalformedJwtException e) {
             logger.error("Not valid JWT token");
             throw new CustomException("Not valid JWT token", ErrorCode.Failed);
         }
     }
-}
\ No newline at end of file
+}
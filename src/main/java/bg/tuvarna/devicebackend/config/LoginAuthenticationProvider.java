@@ -0,0 +1,89 @@
+package bg.tuvarna.devicebackend.config;
+
+import bg.tuvarna.devicebackend.controllers.exceptions.OverloadedException;
+import bg.tuvarna.devicebackend.models.dtos.UserCredentialsVO;
+import bg.tuvarna.devicebackend.models.entities.User;
+import bg.tuvarna.devicebackend.repositories.UserRepository;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.InternalAuthenticationServiceException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * Authenticates a login by email or phone with a single projection query.
+ * The principal is a {@link User} without password and devices.
+ * Hashes the encoder reports as outdated are re-hashed with the current settings after a successful match.
+ */
+@RequiredArgsConstructor
+public class LoginAuthenticationProvider implements AuthenticationProvider {
+    private static final Logger logger = LoggerFactory.getLogger(LoginAuthenticationProvider.class);
+    private static final String UNKNOWN_USER_PASSWORD = "userNotFoundPassword";
+
+    private final UserRepository userRepository;
+    private final PasswordEncoder passwordEncoder;
+    private volatile String unknownUserHash;
+
+    /**
+     * A shed password check is rethrown as an {@link InternalAuthenticationServiceException},
+     * which the provider manager passes through instead of treating it as bad credentials.
+     */
+    @Override
+    public Authentication authenticate(Authentication authentication) {
+        try {
+            return authenticateCredentials(authentication);
+        } catch (OverloadedException e) {
+            throw new InternalAuthenticationServiceException(e.getMessage(), e);
+        }
+    }
+
+    private Authentication authenticateCredentials(Authentication authentication) {
+        String username = authentication.getName();
+        String password = authentication.getCredentials() != null ? authentication.getCredentials().toString() : "";
+
+        UserCredentialsVO credentials = username != null ? userRepository.findCredentialsByUsername(username).orElse(null) : null;
+        if (credentials == null) {
+            // Spend the same time as a real check, so response times don't reveal which usernames exist.
+            passwordEncoder.matches(password, unknownUserHash());
+            throw new BadCredentialsException("Wrong credentials!");
+        }
+
+        if (credentials.password() == null || !passwordEncoder.matches(password, credentials.password())) {
+            throw new BadCredentialsException("Wrong credentials!");
+        }
+
+        if (passwordEncoder.upgradeEncoding(credentials.password())) {
+            upgradePassword(credentials, password);
+        }
+
+        User user = credentials.toUser();
+        return UsernamePasswordAuthenticationToken.authenticated(user, null, user.getAuthorities());
+    }
+
+    @Override
+    public boolean supports(Class<?> authentication) {
+        return UsernamePasswordAuthenticationToken.class.isAssignableFrom(authentication);
+    }
+
+    /**
+     * Best effort: when hashing is shed the login still succeeds and the upgrade is retried next time.
+     */
+    private void upgradePassword(UserCredentialsVO credentials, String password) {
+        try {
+            userRepository.replacePassword(credentials.id(), credentials.password(), passwordEncoder.encode(password));
+        } catch (OverloadedException e) {
+            logger.debug("Skipped password hash upgrade of user {}: {}", credentials.id(), e.getMessage());
+        }
+    }
+
+    private String unknownUserHash() {
+        if (unknownUserHash == null) {
+            unknownUserHash = passwordEncoder.encode(UNKNOWN_USER_PASSWORD);
+        }
+        return unknownUserHash;
+    }
+}
@@ -0,0 +1,32 @@
+package bg.tuvarna.devicebackend.config;
+
+import bg.tuvarna.devicebackend.models.dtos.UserLoginDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.security.authentication.AuthenticationServiceException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.web.authentication.AuthenticationConverter;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+/**
+ * Reads the login body with the shared Jackson mapper. The user is resolved later by {@link LoginAuthenticationProvider}.
+ */
+@Component
+@RequiredArgsConstructor
+public class LoginRequestConverter implements AuthenticationConverter {
+    private final ObjectMapper objectMapper;
+
+    @Override
+    public Authentication convert(HttpServletRequest request) {
+        try {
+            UserLoginDTO userLoginDTO = objectMapper.readValue(request.getInputStream(), UserLoginDTO.class);
+            return UsernamePasswordAuthenticationToken.unauthenticated(userLoginDTO.getUsername(), userLoginDTO.getPassword());
+        } catch (IOException e) {
+            throw new AuthenticationServiceException("Wrong credentials!");
+        }
+    }
+}
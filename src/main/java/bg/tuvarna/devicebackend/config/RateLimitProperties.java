@@ -0,0 +1,26 @@
+package bg.tuvarna.devicebackend.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Per-route limits of {@link RateLimitFilter}. Each route allows {@code capacity} requests per client,
+ * refilled evenly over {@code refillPeriod}. The first route whose pattern matches the path applies.
+ * Only the keys listed in {@code apiKeys} get a bucket of their own, any other key is limited by address.
+ */
+@ConfigurationProperties(prefix = "rate-limit")
+public record RateLimitProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("X-API-Key") String apiKeyHeader,
+        @DefaultValue Set<String> apiKeys,
+        @DefaultValue("PT10M") Duration idleTimeout,
+        @DefaultValue("100000") long maxClients,
+        @DefaultValue List<Route> routes
+) {
+    public record Route(String pattern, long capacity, Duration refillPeriod) {
+    }
+}
@@ -3,16 +3,30 @@ package bg.tuvarna.devicebackend.config;
 import bg.tuvarna.devicebackend.models.enums.UserRole;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.autoconfigure.security.servlet.EndpointRequest;
+import org.springframework.boot.actuate.health.HealthEndpoint;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.Order;
 import org.springframework.http.HttpStatus;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.ProviderManager;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
+import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.provisioning.InMemoryUserDetailsManager;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.AuthenticationFilter;
 import org.springframework.security.web.authentication.HttpStatusEntryPoint;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
+import org.springframework.security.web.authentication.www.BasicAuthenticationFilter;
 import org.springframework.web.cors.CorsConfiguration;
 
 import java.util.List;
@@ -21,22 +35,59 @@ import java.util.List;
 @EnableWebSecurity
 @RequiredArgsConstructor
 public class SecurityConfig {
+    private static final String PROMETHEUS_SCRAPER = "PROMETHEUS_SCRAPER";
+
     private final JwtAuthenticationFilter jwtAuthFilter;
-    private final ApplicationConfig applicationConfig;
+    private final AuthenticationManager authenticationManager;
     private final AuthenticationFilter authenticationFilter;
 
+    /**
+     * Prometheus can't log in for a short-lived JWT, so the scrape endpoint also accepts HTTP basic auth
+     * with the credentials in auth.prometheus.*. Without a password the basic user is not created.
+     */
+    @Bean
+    @Order(1)
+    public SecurityFilterChain prometheusFilterChain(
+            HttpSecurity http,
+            @Value("${auth.prometheus.username:prometheus}") String username,
+            @Value("${auth.prometheus.password:}") String password
+    ) throws Exception {
+        PasswordEncoder encoder = new BCryptPasswordEncoder(4);
+        InMemoryUserDetailsManager users = new InMemoryUserDetailsManager();
+        if (!password.isBlank()) {
+            users.createUser(User.withUsername(username)
+                    .password(encoder.encode(password))
+                    .authorities(PROMETHEUS_SCRAPER)
+                    .build());
+        }
+        DaoAuthenticationProvider provider = new DaoAuthenticationProvider(encoder);
+        provider.setUserDetailsService(users);
+
+        http.securityMatcher(EndpointRequest.to("prometheus"));
+        http.csrf(AbstractHttpConfigurer::disable);
+        http.sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS));
+        http.authorizeHttpRequests(auth -> auth.anyRequest().hasAnyAuthority(PROMETHEUS_SCRAPER, UserRole.ADMIN.toString()));
+        http.authenticationManager(new ProviderManager(provider));
+        http.httpBasic(Customizer.withDefaults());
+        http.addFilterBefore(jwtAuthFilter, BasicAuthenticationFilter.class);
+
+        return http.build();
+    }
+
     @Bean
     public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
         http.csrf(AbstractHttpConfigurer::disable);
         http.cors(cors -> cors.configurationSource(SecurityConfig::getCorsConfiguration));
         http.authorizeHttpRequests(auth -> {
-            auth.requestMatchers("/api/v1/passports/getBySerialId/*", "/api/v1/users/login", "/api/v1/users/registration", "/swagger-ui", "/swagger", "/swagger-ui/**", "/swagger/**", "/login/**").permitAll();
+            auth.requestMatchers("/api/v1/passports/getBySerialId/*", "/api/v1/passports/getBySerialIds", "/api/v1/users/login", "/api/v1/users/refresh", "/api/v1/users/registration", "/swagger-ui", "/swagger", "/swagger-ui/**", "/swagger/**", "/login/**").permitAll();
             auth.requestMatchers("/api/v1/devices/exists/", "/api/v1/devices/addAnonymousDevice", "/api/v1/devices/exists/*").permitAll();
             auth.requestMatchers("/api/v1/users/update", "/api/v1/devices/addDevice", "api/v1/users/getUser", "/api/v1/users/changePassword").hasAnyAuthority(UserRole.USER.toString(), UserRole.ADMIN.toString());
             auth.requestMatchers("/api/v1/passports/**", "/api/v1/users", "/api/v1/users/*", "/api/v1/renovations", "/api/v1/devices", "/api/v1/devices/**").hasAuthority(UserRole.ADMIN.toString());
+            auth.requestMatchers(EndpointRequest.to(HealthEndpoint.class)).permitAll();
+            auth.requestMatchers(EndpointRequest.toAnyEndpoint()).hasAuthority(UserRole.ADMIN.toString());
             auth.anyRequest().authenticated();
         });
-        http.authenticationManager(applicationConfig.authenticationManager());
+        http.authenticationManager(authenticationManager);
         http.addFilterAt(authenticationFilter, UsernamePasswordAuthenticationFilter.class);
         http.addFilterBefore(jwtAuthFilter, UsernamePasswordAuthenticationFilter.class);
         http.exceptionHandling(e -> e
@@ -0,0 +1,47 @@
+package bg.tuvarna.devicebackend.config;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.NonNull;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Wires the per-request SQL instrumentation, see {@link SqlMetricsFilter}:
+ * the statement inspector and timing listener into Hibernate, and an interceptor
+ * naming the controller handler once Spring MVC has resolved it.
+ */
+@Configuration
+public class SqlInstrumentationConfig implements WebMvcConfigurer {
+    @Bean
+    public HibernatePropertiesCustomizer sqlInstrumentationCustomizer() {
+        return properties -> {
+            properties.put(AvailableSettings.STATEMENT_INSPECTOR, new SqlStatementInspector());
+            properties.put(AvailableSettings.AUTO_SESSION_EVENTS_LISTENER, SqlTimingListener.class.getName());
+        };
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new HandlerInterceptor() {
+            @Override
+            public boolean preHandle(
+                    @NonNull HttpServletRequest request,
+                    @NonNull HttpServletResponse response,
+                    @NonNull Object handler
+            ) {
+                SqlRequestStats stats = SqlRequestStats.current();
+                if (stats != null && handler instanceof HandlerMethod method) {
+                    stats.setHandler(method.getBeanType().getSimpleName() + "." + method.getMethod().getName());
+                }
+                return true;
+            }
+        });
+    }
+}
@@ -0,0 +1,213 @@
+package bg.tuvarna.devicebackend.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects the SQL statements of every request, including the ones issued by the security filters,
+ * and records them per controller handler as {@code sql.statements.per.request}, {@code sql.jdbc.time.per.request}
+ * and {@code sql.slow.statements}. Statements slower than {@code diagnostics.sql.slow-threshold} are logged.
+ * With {@code diagnostics.sql.response-header=true} the response carries X-SQL-Count and X-SQL-Time-Ms;
+ * the body is buffered for that, so it is meant for the dev and test profiles only.
+ * Streamed (NDJSON, server-sent events) and async responses are never buffered, their totals are logged at debug level instead.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 110)
+public class SqlMetricsFilter extends OncePerRequestFilter {
+    public static final String COUNT_HEADER = "X-SQL-Count";
+    public static final String TIME_HEADER = "X-SQL-Time-Ms";
+
+    private static final Logger logger = LoggerFactory.getLogger(SqlMetricsFilter.class);
+    private static final int MAX_LOGGED_SQL_LENGTH = 1000;
+
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final long slowThresholdNanos;
+    private final int maxSlowSamples;
+    private final boolean responseHeader;
+
+    public SqlMetricsFilter(
+            MeterRegistry meterRegistry,
+            @Value("${diagnostics.sql.enabled:true}") boolean enabled,
+            @Value("${diagnostics.sql.slow-threshold:PT0.2S}") Duration slowThreshold,
+            @Value("${diagnostics.sql.max-slow-samples:5}") int maxSlowSamples,
+            @Value("${diagnostics.sql.response-header:false}") boolean responseHeader
+    ) {
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.slowThresholdNanos = slowThreshold.toNanos();
+        this.maxSlowSamples = maxSlowSamples;
+        this.responseHeader = responseHeader;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(@NonNull HttpServletRequest request) {
+        return !enabled;
+    }
+
+    @Override
+    protected void doFilterInternal(
+            @NonNull HttpServletRequest request,
+            @NonNull HttpServletResponse response,
+            @NonNull FilterChain filterChain
+    ) throws ServletException, IOException {
+        SqlRequestStats stats = SqlRequestStats.start(slowThresholdNanos, maxSlowSamples);
+        try {
+            if (!responseHeader) {
+                filterChain.doFilter(request, response);
+                return;
+            }
+
+            HeaderResponseWrapper wrapper = new HeaderResponseWrapper(response);
+            filterChain.doFilter(request, wrapper);
+            if (request.isAsyncStarted()) {
+                // The body is written after this filter returns, nothing would copy it out of the buffer.
+                wrapper.passThrough();
+            }
+
+            if (wrapper.isPassThrough()) {
+                logger.debug("{} streamed its response after {} SQL statements taking {} ms",
+                        stats.handler(), stats.statements(), TimeUnit.NANOSECONDS.toMillis(stats.jdbcNanos()));
+            } else {
+                wrapper.setHeader(COUNT_HEADER, String.valueOf(stats.statements()));
+                wrapper.setHeader(TIME_HEADER, String.valueOf(TimeUnit.NANOSECONDS.toMillis(stats.jdbcNanos())));
+            }
+            wrapper.copyBodyToResponse();
+        } finally {
+            SqlRequestStats.clear();
+            record(stats);
+        }
+    }
+
+    private void record(SqlRequestStats stats) {
+        if (!stats.hasHandler() && stats.statements() == 0) {
+            return;
+        }
+
+        DistributionSummary.builder("sql.statements.per.request")
+                .tag("handler", stats.handler())
+                .baseUnit("statements")
+                .description("SQL statements issued per request")
+                .register(meterRegistry)
+                .record(stats.statements());
+        Timer.builder("sql.jdbc.time.per.request")
+                .tag("handler", stats.handler())
+                .description("Time spent executing SQL per request")
+                .register(meterRegistry)
+                .record(stats.jdbcNanos(), TimeUnit.NANOSECONDS);
+
+        if (stats.slowStatements().isEmpty()) {
+            return;
+        }
+
+        Counter.builder("sql.slow.statements")
+                .tag("handler", stats.handler())
+                .description("SQL statements slower than the slow threshold")
+                .register(meterRegistry)
+                .increment(stats.slowStatements().size());
+        for (SqlRequestStats.SlowStatement slow : stats.slowStatements()) {
+            logger.warn("Slow SQL in {} took {} ms: {}",
+                    stats.handler(), TimeUnit.NANOSECONDS.toMillis(slow.nanos()), abbreviate(slow.sql()));
+        }
+    }
+
+    private static String abbreviate(String sql) {
+        if (sql == null || sql.length() <= MAX_LOGGED_SQL_LENGTH) {
+            return sql;
+        }
+        return sql.substring(0, MAX_LOGGED_SQL_LENGTH) + "...";
+    }
+
+    /**
+     * Buffers the body for the headers until the response turns out to be a stream.
+     * From then on writes and flushes go straight to the client.
+     */
+    private static final class HeaderResponseWrapper extends ContentCachingResponseWrapper {
+        private static final List<MediaType> STREAMING_TYPES = List.of(MediaType.APPLICATION_NDJSON, MediaType.TEXT_EVENT_STREAM);
+
+        private volatile boolean passThrough;
+
+        HeaderResponseWrapper(HttpServletResponse response) {
+            super(response);
+        }
+
+        boolean isPassThrough() {
+            return passThrough;
+        }
+
+        void passThrough() throws IOException {
+            if (!passThrough) {
+                passThrough = true;
+                copyBodyToResponse(false);
+            }
+        }
+
+        @Override
+        public void setContentType(String type) {
+            super.setContentType(type);
+            if (isStreaming(type)) {
+                try {
+                    passThrough();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            return passThrough ? getResponse().getOutputStream() : super.getOutputStream();
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            return passThrough ? getResponse().getWriter() : super.getWriter();
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            if (passThrough) {
+                getResponse().flushBuffer();
+            } else {
+                super.flushBuffer();
+            }
+        }
+
+        private static boolean isStreaming(String type) {
+            if (type == null) {
+                return false;
+            }
+            try {
+                MediaType mediaType = MediaType.parseMediaType(type);
+                return STREAMING_TYPES.stream().anyMatch(mediaType::isCompatibleWith);
+            } catch (InvalidMediaTypeException e) {
+                return false;
+            }
+        }
+    }
+}
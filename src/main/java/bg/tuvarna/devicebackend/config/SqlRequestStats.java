@@ -0,0 +1,83 @@
+package bg.tuvarna.devicebackend.config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * SQL issued while serving the current request. {@link SqlStatementInspector} counts and tags the statements,
+ * {@link SqlTimingListener} adds the JDBC execution time and {@link SqlMetricsFilter} reports the totals.
+ * Work outside a request, like scheduled jobs and startup, has no stats and is not counted.
+ */
+public final class SqlRequestStats {
+    private static final ThreadLocal<SqlRequestStats> CURRENT = new ThreadLocal<>();
+    private static final String NO_HANDLER = "none";
+
+    private final long slowThresholdNanos;
+    private final int maxSlowSamples;
+    private final List<SlowStatement> slowStatements = new ArrayList<>();
+    private String handler = NO_HANDLER;
+    private String lastStatement;
+    private int statements;
+    private long jdbcNanos;
+
+    private SqlRequestStats(long slowThresholdNanos, int maxSlowSamples) {
+        this.slowThresholdNanos = slowThresholdNanos;
+        this.maxSlowSamples = maxSlowSamples;
+    }
+
+    static SqlRequestStats start(long slowThresholdNanos, int maxSlowSamples) {
+        SqlRequestStats stats = new SqlRequestStats(slowThresholdNanos, maxSlowSamples);
+        CURRENT.set(stats);
+        return stats;
+    }
+
+    static SqlRequestStats current() {
+        return CURRENT.get();
+    }
+
+    static void clear() {
+        CURRENT.remove();
+    }
+
+    void statementPrepared(String sql) {
+        statements++;
+        lastStatement = sql;
+    }
+
+    /**
+     * Executions follow the preparation of their statement on the same session, so the last prepared one is sampled.
+     */
+    void statementExecuted(long nanos) {
+        jdbcNanos += nanos;
+        if (nanos >= slowThresholdNanos && slowStatements.size() < maxSlowSamples) {
+            slowStatements.add(new SlowStatement(lastStatement, nanos));
+        }
+    }
+
+    void setHandler(String handler) {
+        this.handler = handler;
+    }
+
+    String handler() {
+        return handler;
+    }
+
+    boolean hasHandler() {
+        return !NO_HANDLER.equals(handler);
+    }
+
+    int statements() {
+        return statements;
+    }
+
+    long jdbcNanos() {
+        return jdbcNanos;
+    }
+
+    List<SlowStatement> slowStatements() {
+        return slowStatements;
+    }
+
+    record SlowStatement(String sql, long nanos) {
+    }
+}
@@ -0,0 +1,20 @@
+package bg.tuvarna.devicebackend.config;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Counts the statements of the current request and prefixes them with a comment naming the controller handler,
+ * like {@code DeviceController.getDevices}, so they can be traced back from the database logs.
+ */
+public class SqlStatementInspector implements StatementInspector {
+    @Override
+    public String inspect(String sql) {
+        SqlRequestStats stats = SqlRequestStats.current();
+        if (stats == null) {
+            return sql;
+        }
+
+        stats.statementPrepared(sql);
+        return stats.hasHandler() ? "/* " + stats.handler() + " */ " + sql : sql;
+    }
+}
@@ -0,0 +1,38 @@
+package bg.tuvarna.devicebackend.config;
+
+import org.hibernate.SessionEventListener;
+
+/**
+ * Adds the JDBC execution time of every statement and batch to the current request's {@link SqlRequestStats}.
+ * Hibernate creates one listener per session, set through {@code hibernate.session.events.auto}.
+ */
+public class SqlTimingListener implements SessionEventListener {
+    private long executionStart;
+
+    @Override
+    public void jdbcExecuteStatementStart() {
+        executionStart = System.nanoTime();
+    }
+
+    @Override
+    public void jdbcExecuteStatementEnd() {
+        executed();
+    }
+
+    @Override
+    public void jdbcExecuteBatchStart() {
+        executionStart = System.nanoTime();
+    }
+
+    @Override
+    public void jdbcExecuteBatchEnd() {
+        executed();
+    }
+
+    private void executed() {
+        SqlRequestStats stats = SqlRequestStats.current();
+        if (stats != null) {
+            stats.statementExecuted(System.nanoTime() - executionStart);
+        }
+    }
+}
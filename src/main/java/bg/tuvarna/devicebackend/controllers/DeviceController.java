@@ -2,30 +2,44 @@ package bg.tuvarna.devicebackend.controllers;
 
 import bg.tuvarna.devicebackend.controllers.exceptions.ErrorResponse;
 import bg.tuvarna.devicebackend.models.dtos.DeviceCreateVO;
+import bg.tuvarna.devicebackend.models.dtos.DeviceImportResultVO;
+import bg.tuvarna.devicebackend.models.dtos.DeviceListing;
 import bg.tuvarna.devicebackend.models.dtos.DeviceUpdateVO;
 import bg.tuvarna.devicebackend.models.dtos.DeviceVO;
 import bg.tuvarna.devicebackend.models.entities.Device;
 import bg.tuvarna.devicebackend.models.entities.User;
+import bg.tuvarna.devicebackend.services.DeviceImportService;
 import bg.tuvarna.devicebackend.services.DeviceService;
+import bg.tuvarna.devicebackend.utils.CursorPage;
 import bg.tuvarna.devicebackend.utils.CustomPage;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.AllArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
 @RestController
 @RequestMapping("/api/v1/devices")
 @AllArgsConstructor
 public class DeviceController {
     private final DeviceService deviceService;
+    private final DeviceImportService deviceImportService;
+    private final ObjectMapper objectMapper;
 
     @Operation(
             description = "Return device by id for logged in user.",
@@ -97,7 +111,7 @@ public class DeviceController {
     )
     @GetMapping
     @SecurityRequirement(name = "bearerAuth")
-    public ResponseEntity<CustomPage<Device>> getDevices(
+    public ResponseEntity<CustomPage<DeviceListing>> getDevices(
             @RequestParam(required = false) String searchBy,
             @RequestParam(defaultValue = "1") int page,
             @RequestParam(defaultValue = "10") int size
@@ -105,6 +119,22 @@ public class DeviceController {
         return ResponseEntity.ok(deviceService.getDevices(searchBy, page, size));
     }
 
+    @Operation(
+            summary = "Returns devices by cursor.",
+            description = "Returns devices ordered by serial number, starting after the given cursor. " +
+                    "Pass the returned nextCursor to get the following page. The total is only counted when withTotal is true."
+    )
+    @GetMapping("/scroll")
+    @SecurityRequirement(name = "bearerAuth")
+    public ResponseEntity<CursorPage<DeviceListing>> getDevicesAfter(
+            @RequestParam(required = false) String searchBy,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "false") boolean withTotal
+    ) {
+        return ResponseEntity.ok(deviceService.getDevicesAfter(searchBy, cursor, size, withTotal));
+    }
+
     @Operation(
             description = "Register device for logged in user.",
             summary = "Register device for logged in user"
@@ -143,6 +173,30 @@ public class DeviceController {
                 .body(new DeviceVO(saved));
     }
 
+    @Operation(
+            description = "Register a JSON array of anonymous devices. Outcomes are streamed back as NDJSON, " +
+                    "one line per device, while the upload is being processed.",
+            summary = "Register devices in bulk"
+    )
+    @PostMapping(value = "/bulk", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @SecurityRequirement(name = "bearerAuth")
+    public void registerDevices(InputStream body, HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        OutputStream out = response.getOutputStream();
+
+        deviceImportService.registerDevices(body, results -> {
+            try {
+                for (DeviceImportResultVO result : results) {
+                    out.write(objectMapper.writeValueAsBytes(result));
+                    out.write('\n');
+                }
+                out.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
     @Operation(
             description = "Update device date by admin.",
             summary = "Update device date by admin."
@@ -2,6 +2,7 @@ package bg.tuvarna.devicebackend.controllers;
 
 import bg.tuvarna.devicebackend.models.dtos.*;
 import bg.tuvarna.devicebackend.models.entities.Passport;
+import bg.tuvarna.devicebackend.services.PassportImportService;
 import bg.tuvarna.devicebackend.services.PassportService;
 import bg.tuvarna.devicebackend.utils.CustomPage;
 import io.swagger.v3.oas.annotations.Operation;
@@ -12,15 +13,23 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import jakarta.validation.Valid;
 import lombok.AllArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+
 @RestController
 @RequestMapping("api/v1/passports")
 @AllArgsConstructor
 public class PassportController {
     private final PassportService passportService;
+    private final PassportImportService passportImportService;
 
     @Operation(
             description = "Create passport",
@@ -52,6 +61,20 @@ public class PassportController {
                 .body(new PassportVO(saved));
     }
 
+    @Operation(
+            description = "Import passports from a CSV (name,model,serialPrefix,warrantyMonths,fromSerialNumber,toSerialNumber) " +
+                    "or NDJSON stream. Every row gets either the id of the created passport or an error.",
+            summary = "Import passports"
+    )
+    @PostMapping(value = "/import", consumes = {"text/csv", MediaType.APPLICATION_NDJSON_VALUE})
+    @SecurityRequirement(name = "bearerAuth")
+    public ResponseEntity<List<PassportImportResultVO>> importPassports(
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+            InputStream body
+    ) throws IOException {
+        return ResponseEntity.ok(passportImportService.importPassports(body, MediaType.parseMediaType(contentType)));
+    }
+
     @Operation(
             description = "Update passport",
             summary = "Update passport"
@@ -119,4 +142,21 @@ public class PassportController {
     public ResponseEntity<PassportForSerialNumberVO> getPassportForSerialId(@PathVariable String serialId) {
         return ResponseEntity.ok(new PassportForSerialNumberVO(passportService.findPassportBySerialId(serialId)));
     }
+
+    @Operation(
+            description = "Get passports for a batch of serialIds. Every serialId gets either a passport or an error.",
+            summary = "Get passports by serialIds"
+    )
+    @PostMapping("/getBySerialIds")
+    public ResponseEntity<List<PassportSerialLookupResultVO>> getPassportsForSerialIds(
+            @RequestBody @Valid PassportSerialLookupVO lookupVO
+    ) {
+        Map<String, Passport> passports = passportService.findPassportsBySerialIds(lookupVO.serialIds());
+
+        return ResponseEntity.ok(lookupVO.serialIds()
+                .stream()
+                .map(serialId -> new PassportSerialLookupResultVO(serialId, passports.get(serialId)))
+                .toList()
+        );
+    }
 }
\ No newline at end of file
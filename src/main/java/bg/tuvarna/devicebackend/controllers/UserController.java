@@ -3,7 +3,9 @@ package bg.tuvarna.devicebackend.controllers;
 import bg.tuvarna.devicebackend.controllers.exceptions.ErrorResponse;
 import bg.tuvarna.devicebackend.models.dtos.*;
 import bg.tuvarna.devicebackend.models.entities.User;
+import bg.tuvarna.devicebackend.services.RefreshTokenService;
 import bg.tuvarna.devicebackend.services.UserService;
+import bg.tuvarna.devicebackend.utils.CursorPage;
 import bg.tuvarna.devicebackend.utils.CustomPage;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -22,6 +24,7 @@ import org.springframework.web.bind.annotation.*;
 @AllArgsConstructor
 public class UserController {
     private final UserService userService;
+    private final RefreshTokenService refreshTokenService;
 
     @Operation(
             summary = "Register user.",
@@ -71,6 +74,34 @@ public class UserController {
         return ResponseEntity.ok().build();
     }
 
+    @Operation(
+            summary = "Refresh access token.",
+            description = "Exchanges a refresh token from the login for a new access token and a new refresh token. " +
+                    "Each refresh token can be used once; reusing one ends the whole session."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Successfully refreshed.",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = TokenPairVO.class)
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Refresh token is unknown, expired or was already used.",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = ErrorResponse.class)
+                    )
+            )
+    })
+    @PostMapping("/refresh")
+    public ResponseEntity<TokenPairVO> refresh(@RequestBody @Valid RefreshTokenVO refreshTokenVO) {
+        return ResponseEntity.ok(refreshTokenService.refresh(refreshTokenVO.refreshToken()));
+    }
+
     @Operation(
             summary = "Returns users.",
             description = "Returns users based on search."
@@ -85,6 +116,22 @@ public class UserController {
         return ResponseEntity.ok(userService.getUsers(searchBy, page, size));
     }
 
+    @Operation(
+            summary = "Returns users by cursor.",
+            description = "Returns users ordered by id, starting after the given cursor. " +
+                    "Pass the returned nextCursor to get the following page. The total is only counted when withTotal is true."
+    )
+    @GetMapping("/scroll")
+    @SecurityRequirement(name = "bearerAuth")
+    public ResponseEntity<CursorPage<UserListing>> getUsersAfter(
+            @RequestParam(required = false) String searchBy,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "false") boolean withTotal
+    ) {
+        return ResponseEntity.ok(userService.getUsersAfter(searchBy, cursor, size, withTotal));
+    }
+
     @Operation(
             summary = "Update user.",
             description = "Update user."
@@ -134,6 +181,6 @@ public class UserController {
     @GetMapping("/getUser")
     @SecurityRequirement(name = "bearerAuth")
     public ResponseEntity<UserVO> getUser(@AuthenticationPrincipal User user) {
-        return ResponseEntity.ok(new UserVO(user));
+        return ResponseEntity.ok(new UserVO(userService.getUserDetail(user.getId())));
     }
 }
\ No newline at end of file
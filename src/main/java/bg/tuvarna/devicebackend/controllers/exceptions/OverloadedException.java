@@ -0,0 +1,16 @@
+package bg.tuvarna.devicebackend.controllers.exceptions;
+
+import lombok.Getter;
+
+/**
+ * Thrown when work is shed instead of queued. Answered with 503 and a Retry-After header.
+ */
+@Getter
+public class OverloadedException extends CustomException {
+    private final long retryAfterSeconds;
+
+    public OverloadedException(String message, long retryAfterSeconds) {
+        super(message, ErrorCode.Overloaded);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
@@ -0,0 +1,20 @@
+package bg.tuvarna.devicebackend.models.dtos;
+
+import bg.tuvarna.devicebackend.controllers.exceptions.CustomException;
+import bg.tuvarna.devicebackend.controllers.exceptions.ErrorResponse;
+
+import java.time.LocalDate;
+
+public record DeviceImportResultVO(
+        String serialNumber,
+        LocalDate warrantyExpirationDate,
+        ErrorResponse error
+) {
+    public static DeviceImportResultVO registered(String serialNumber, LocalDate warrantyExpirationDate) {
+        return new DeviceImportResultVO(serialNumber, warrantyExpirationDate, null);
+    }
+
+    public static DeviceImportResultVO failed(String serialNumber, CustomException ex) {
+        return new DeviceImportResultVO(serialNumber, null, new ErrorResponse(ex));
+    }
+}
@@ -0,0 +1,39 @@
+package bg.tuvarna.devicebackend.models.dtos;
+
+import java.time.LocalDate;
+
+/**
+ * Row of the admin device table, selected with a constructor expression.
+ * Renovations are only counted, their details are served by the device detail.
+ */
+public record DeviceListing(
+        String serialNumber,
+        LocalDate purchaseDate,
+        LocalDate warrantyExpirationDate,
+        String comment,
+        PassportSummary passport,
+        Long renovationCount
+) {
+    public DeviceListing(
+            String serialNumber,
+            LocalDate purchaseDate,
+            LocalDate warrantyExpirationDate,
+            String comment,
+            Long passportId,
+            String passportName,
+            String passportModel,
+            Long renovationCount
+    ) {
+        this(
+                serialNumber,
+                purchaseDate,
+                warrantyExpirationDate,
+                comment,
+                passportId != null ? new PassportSummary(passportId, passportName, passportModel) : null,
+                renovationCount
+        );
+    }
+
+    public record PassportSummary(Long id, String name, String model) {
+    }
+}
@@ -0,0 +1,18 @@
+package bg.tuvarna.devicebackend.models.dtos;
+
+import bg.tuvarna.devicebackend.controllers.exceptions.CustomException;
+import bg.tuvarna.devicebackend.controllers.exceptions.ErrorResponse;
+
+public record PassportImportResultVO(
+        int row,
+        Long id,
+        ErrorResponse error
+) {
+    public static PassportImportResultVO imported(int row, Long id) {
+        return new PassportImportResultVO(row, id, null);
+    }
+
+    public static PassportImportResultVO failed(int row, CustomException ex) {
+        return new PassportImportResultVO(row, null, new ErrorResponse(ex));
+    }
+}
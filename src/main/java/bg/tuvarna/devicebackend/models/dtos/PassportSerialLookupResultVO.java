@@ -0,0 +1,22 @@
+package bg.tuvarna.devicebackend.models.dtos;
+
+import bg.tuvarna.devicebackend.controllers.exceptions.CustomException;
+import bg.tuvarna.devicebackend.controllers.exceptions.ErrorCode;
+import bg.tuvarna.devicebackend.controllers.exceptions.ErrorResponse;
+import bg.tuvarna.devicebackend.models.entities.Passport;
+
+public record PassportSerialLookupResultVO(
+        String serialId,
+        PassportForSerialNumberVO passport,
+        ErrorResponse error
+) {
+    public PassportSerialLookupResultVO(String serialId, Passport passport) {
+        this(
+                serialId,
+                passport != null ? new PassportForSerialNumberVO(passport) : null,
+                passport == null ? new ErrorResponse(
+                        new CustomException("Passport not found for serial number: " + serialId, ErrorCode.Failed)
+                ) : null
+        );
+    }
+}
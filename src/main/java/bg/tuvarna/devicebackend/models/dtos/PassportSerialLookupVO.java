@@ -0,0 +1,13 @@
+package bg.tuvarna.devicebackend.models.dtos;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+public record PassportSerialLookupVO(
+        @NotEmpty(message = "Serial ids are required")
+        @Size(max = 1000, message = "At most 1000 serial ids can be checked at once")
+        List<String> serialIds
+) {
+}
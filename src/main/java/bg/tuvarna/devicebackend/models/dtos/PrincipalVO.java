@@ -0,0 +1,23 @@
+package bg.tuvarna.devicebackend.models.dtos;
+
+import bg.tuvarna.devicebackend.models.entities.User;
+import bg.tuvarna.devicebackend.models.enums.UserRole;
+
+public record PrincipalVO(
+        Long id,
+        UserRole role,
+        String email,
+        int tokenVersion
+) {
+    /**
+     * Detached user carrying only what authentication and authorization need.
+     * Controllers that need the full profile load it by id.
+     */
+    public User toUser() {
+        return User.builder()
+                .id(id)
+                .role(role)
+                .email(email)
+                .build();
+    }
+}
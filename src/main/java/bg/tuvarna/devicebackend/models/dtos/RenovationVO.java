@@ -11,11 +11,18 @@ public record RenovationVO(
         DeviceVO device
 ) {
     public RenovationVO(Renovation renovation){
+        this(renovation, true);
+    }
+
+    /**
+     * Renovations listed inside their device leave the device out, it is the enclosing object.
+     */
+    public RenovationVO(Renovation renovation, boolean loadDevice){
         this(
                 renovation.getId(),
                 renovation.getDescription(),
                 renovation.getRenovationDate(),
-                new DeviceVO(renovation.getDevice())
+                loadDevice ? new DeviceVO(renovation.getDevice()) : null
         );
     }
 }
\ No newline at end of file
@@ -0,0 +1,10 @@
+package bg.tuvarna.devicebackend.models.dtos;
+
+/**
+ * Serial number of a device matching a user search, read from a native query.
+ */
+public interface SerialNumberMatch {
+    Long getUserId();
+
+    String getSerialNumber();
+}
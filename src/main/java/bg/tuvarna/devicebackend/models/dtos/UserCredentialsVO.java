@@ -0,0 +1,28 @@
+package bg.tuvarna.devicebackend.models.dtos;
+
+import bg.tuvarna.devicebackend.models.entities.User;
+import bg.tuvarna.devicebackend.models.enums.UserRole;
+
+public record UserCredentialsVO(
+        Long id,
+        String fullName,
+        String address,
+        String phone,
+        String email,
+        String password,
+        UserRole role
+) {
+    /**
+     * Profile without the password and without devices, which are only loaded when the login response needs them.
+     */
+    public User toUser() {
+        return User.builder()
+                .id(id)
+                .fullName(fullName)
+                .address(address)
+                .phone(phone)
+                .email(email)
+                .role(role)
+                .build();
+    }
+}
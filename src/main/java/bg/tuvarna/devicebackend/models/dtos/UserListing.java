@@ -1,19 +1,26 @@
 package bg.tuvarna.devicebackend.models.dtos;
 
-import bg.tuvarna.devicebackend.models.entities.Device;
-import bg.tuvarna.devicebackend.models.entities.User;
-
 import java.util.List;
 
+/**
+ * Row of the admin user table, selected with a constructor expression.
+ * Devices are only counted, they are listed in the user detail.
+ * When the listing is searched, {@code matchingDevices} holds the serial numbers matching the term.
+ */
 public record UserListing(
         Long id,
         String fullName,
         String address,
         String phone,
         String email,
-        List<Device> devices
+        Long deviceCount,
+        List<String> matchingDevices
 ) {
-    public UserListing (User user){
-        this(user.getId(), user.getFullName(), user.getAddress(), user.getPhone(), user.getEmail(), user.getDevices());
+    public UserListing(Long id, String fullName, String address, String phone, String email, Long deviceCount) {
+        this(id, fullName, address, phone, email, deviceCount, null);
+    }
+
+    public UserListing withMatchingDevices(List<String> matchingDevices) {
+        return new UserListing(id, fullName, address, phone, email, deviceCount, matchingDevices);
     }
-}
\ No newline at end of file
+}
@@ -1,5 +1,6 @@
 package bg.tuvarna.devicebackend.models.entities;
 
+import bg.tuvarna.devicebackend.utils.SearchDocuments;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.Getter;
@@ -9,11 +10,21 @@ import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
 
+/**
+ * Every association is lazy. A single device and a user's devices are loaded through the detail graph,
+ * pages of devices are selected as {@link bg.tuvarna.devicebackend.models.dtos.DeviceListing} projections.
+ */
 @Entity
 @Table(name = "devices", schema = "public")
+@NamedEntityGraph(
+        name = Device.DETAIL_GRAPH,
+        attributeNodes = {@NamedAttributeNode("user"), @NamedAttributeNode("passport"), @NamedAttributeNode("renovations")}
+)
 @Getter
 @Setter
 public class Device {
+    public static final String DETAIL_GRAPH = "Device.detail";
+
     @Id
     @Column(name = "serialNumber", nullable = false)
     private String serialNumber;
@@ -21,16 +32,40 @@ public class Device {
     private LocalDate warrantyExpirationDate;
     private String comment;
 
-    @ManyToOne
+    @JsonIgnore
+    @Column(length = 2048)
+    private String searchDocument;
+
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id")
     @JsonIgnore
     private User user;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "passport_id")
     private Passport passport;
 
-    @OneToMany(mappedBy = "device", orphanRemoval = true, cascade = CascadeType.ALL, fetch = FetchType.EAGER)
+    @OneToMany(mappedBy = "device", orphanRemoval = true, cascade = CascadeType.ALL)
     private List<Renovation> renovations = new ArrayList<>();
 
+    /**
+     * Serial number, passport name and model and the owner's contact details, see {@link SearchDocuments}.
+     */
+    public static String searchDocumentOf(String serialNumber, Passport passport, User user) {
+        return SearchDocuments.of(
+                serialNumber,
+                passport != null ? passport.getName() : null,
+                passport != null ? passport.getModel() : null,
+                user != null ? user.getFullName() : null,
+                user != null ? user.getAddress() : null,
+                user != null ? user.getEmail() : null,
+                user != null ? user.getPhone() : null
+        );
+    }
+
+    @PrePersist
+    @PreUpdate
+    void updateSearchDocument() {
+        searchDocument = searchDocumentOf(serialNumber, passport, user);
+    }
 }
\ No newline at end of file
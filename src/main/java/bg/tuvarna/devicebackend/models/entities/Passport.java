@@ -1,5 +1,7 @@
 package bg.tuvarna.devicebackend.models.entities;
 
+import bg.tuvarna.devicebackend.models.listeners.PassportIndexListener;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import jakarta.persistence.*;
 import lombok.*;
 
@@ -10,9 +12,13 @@ import lombok.*;
 @Builder
 @AllArgsConstructor
 @NoArgsConstructor
+@EntityListeners(PassportIndexListener.class)
+// Devices reference their passport lazily, so a serialized passport can be an initialized proxy.
+@JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
 public class Passport {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "passports_seq")
+    @SequenceGenerator(name = "passports_seq", sequenceName = "passports_seq", allocationSize = 50)
     @Column(name = "id", nullable = false)
     private Long id;
     private String name;
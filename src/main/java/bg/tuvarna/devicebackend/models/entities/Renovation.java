@@ -13,7 +13,8 @@ import java.time.LocalDate;
 @Setter
 public class Renovation {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "renovations_seq")
+    @SequenceGenerator(name = "renovations_seq", sequenceName = "renovations_seq", allocationSize = 50)
     @Column(name = "id", nullable = false)
     private Long id;
 
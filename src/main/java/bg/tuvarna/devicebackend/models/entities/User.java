@@ -2,6 +2,8 @@ package bg.tuvarna.devicebackend.models.entities;
 
 import bg.tuvarna.devicebackend.models.dtos.UserCreateVO;
 import bg.tuvarna.devicebackend.models.enums.UserRole;
+import bg.tuvarna.devicebackend.utils.SearchDocuments;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.*;
 import org.springframework.security.core.GrantedAuthority;
@@ -13,14 +15,22 @@ import java.util.List;
 
 @Entity
 @Table(name = "users", schema = "public")
+@NamedEntityGraph(
+        name = User.DETAIL_GRAPH,
+        attributeNodes = @NamedAttributeNode(value = "devices", subgraph = "devices"),
+        subgraphs = @NamedSubgraph(name = "devices", attributeNodes = @NamedAttributeNode("passport"))
+)
 @Getter
 @Setter
 @AllArgsConstructor
 @NoArgsConstructor
 @Builder
 public class User implements UserDetails {
+    public static final String DETAIL_GRAPH = "User.detail";
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "users_seq")
+    @SequenceGenerator(name = "users_seq", sequenceName = "users_seq", allocationSize = 50)
     @Column(name = "id", nullable = false)
     private Long id;
     private String fullName;
@@ -30,8 +40,15 @@ public class User implements UserDetails {
     private String password;
     @Enumerated(EnumType.STRING)
     private UserRole role;
+    @JsonIgnore
+    @Column(length = 1024)
+    private String searchDocument;
+    // Only ever raised by UserRepository.incrementTokenVersion, so saving a stale entity can't undo a revocation.
+    @JsonIgnore
+    @Column(nullable = false, updatable = false)
+    private int tokenVersion;
 
-    @OneToMany(mappedBy = "user", orphanRemoval = true, cascade = CascadeType.ALL, fetch = FetchType.EAGER)
+    @OneToMany(mappedBy = "user", orphanRemoval = true, cascade = CascadeType.ALL)
     private List<Device> devices;
 
     public User(UserCreateVO vo) {
@@ -42,6 +59,12 @@ public class User implements UserDetails {
         this.role = UserRole.USER;
     }
 
+    @PrePersist
+    @PreUpdate
+    void updateSearchDocument() {
+        searchDocument = SearchDocuments.of(fullName, address, email, phone);
+    }
+
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
         return List.of(new SimpleGrantedAuthority(role.name()));
@@ -0,0 +1,54 @@
+package bg.tuvarna.devicebackend.models.listeners;
+
+import bg.tuvarna.devicebackend.models.entities.Passport;
+import bg.tuvarna.devicebackend.services.PassportIndex;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.function.Consumer;
+
+/**
+ * Keeps {@link PassportIndex} in sync with every passport written through JPA,
+ * including the create/update/delete paths of the passport service.
+ * The callbacks run at flush time, so the index is only changed once the transaction commits,
+ * a rolled back write never reaches it.
+ */
+public class PassportIndexListener {
+    @Autowired
+    private ObjectProvider<PassportIndex> passportIndex;
+
+    @PostPersist
+    @PostUpdate
+    public void onSave(Passport passport) {
+        afterCommit(index -> index.put(passport));
+    }
+
+    @PostRemove
+    public void onRemove(Passport passport) {
+        Long id = passport.getId();
+        afterCommit(index -> index.remove(id));
+    }
+
+    private void afterCommit(Consumer<PassportIndex> action) {
+        if (passportIndex == null) {
+            return;
+        }
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            passportIndex.ifAvailable(action);
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                passportIndex.ifAvailable(action);
+            }
+        });
+    }
+}
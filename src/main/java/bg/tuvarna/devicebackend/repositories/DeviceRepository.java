@@ -1,14 +1,23 @@
 package bg.tuvarna.devicebackend.repositories;
 
+import bg.tuvarna.devicebackend.models.dtos.DeviceListing;
+import bg.tuvarna.devicebackend.models.dtos.SerialNumberMatch;
 import bg.tuvarna.devicebackend.models.entities.Device;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
 @Repository
 public interface DeviceRepository extends JpaRepository<Device, String> {
     @Transactional
@@ -16,20 +25,75 @@ public interface DeviceRepository extends JpaRepository<Device, String> {
     @Query("delete from Device d where d.serialNumber = ?1")
     void deleteBySerialNumber(String serialNumber);
 
-    @Query("select distinct d from Device d " +
-            "left join d.user u " +
-            "left join d.passport p " +
-            "where (?1 is null OR ( ?1 is not null AND (lower(d.serialNumber) LIKE concat('%',lower(?1),'%') OR " +
-            "lower(u.fullName) LIKE concat('%',lower(?1),'%') OR " +
-            "lower(u.address) LIKE concat('%',lower(?1),'%') OR " +
-            "lower(u.email) LIKE concat('%',lower(?1),'%') OR " +
-            "lower(u.phone) LIKE concat('%',lower(?1),'%') OR " +
-            "lower(p.name) LIKE concat('%',lower(?1),'%') OR " +
-            "lower(p.model) LIKE concat('%',lower(?1),'%'))))")
-    Page<Device> findAll(String searchBy, Pageable pageable);
-
-    @Query("select distinct d from Device d " +
-            "left join d.user u " +
-            "left join d.passport p ")
-    Page<Device> getAllDevices(Pageable pageable);
+    /**
+     * Matches against the denormalized search document, which a trigram index serves in PostgreSQL.
+     */
+    String SEARCH_FILTER = "(?1 is null OR d.searchDocument LIKE concat('%',lower(?1),'%'))";
+
+    /**
+     * Same layout as {@link Device#searchDocumentOf}, used to refresh documents after a user or passport changes.
+     */
+    String REFRESH_SEARCH_DOCUMENT = "update devices set search_document = lower(" +
+            "coalesce(serial_number, '') || chr(10) || " +
+            "coalesce((select p.name from passports p where p.id = devices.passport_id), '') || chr(10) || " +
+            "coalesce((select p.model from passports p where p.id = devices.passport_id), '') || chr(10) || " +
+            "coalesce((select u.full_name from users u where u.id = devices.user_id), '') || chr(10) || " +
+            "coalesce((select u.address from users u where u.id = devices.user_id), '') || chr(10) || " +
+            "coalesce((select u.email from users u where u.id = devices.user_id), '') || chr(10) || " +
+            "coalesce((select u.phone from users u where u.id = devices.user_id), '')) ";
+
+    @EntityGraph(Device.DETAIL_GRAPH)
+    Optional<Device> findDetailBySerialNumber(String serialNumber);
+
+    /**
+     * Columns of the admin table only, the passport joined and the renovations counted in SQL.
+     */
+    String LISTING_SELECT = "select new bg.tuvarna.devicebackend.models.dtos.DeviceListing(" +
+            "d.serialNumber, d.purchaseDate, d.warrantyExpirationDate, d.comment, p.id, p.name, p.model, " +
+            "(select count(r) from Renovation r where r.device = d)) " +
+            "from Device d left join d.passport p ";
+
+    @Query(LISTING_SELECT + "where d.serialNumber in ?1")
+    List<DeviceListing> findListingBySerialNumberIn(Collection<String> serialNumbers);
+
+    @Query(value = LISTING_SELECT + "where " + SEARCH_FILTER,
+            countQuery = "select count(d) from Device d where " + SEARCH_FILTER)
+    Page<DeviceListing> findListing(String searchBy, Pageable pageable);
+
+    /**
+     * Keyset page ordered by serial number, starting right after {@code after} (or from the start when null).
+     */
+    @Query(LISTING_SELECT +
+            "where " + SEARCH_FILTER + " AND (?2 is null OR d.serialNumber > ?2) " +
+            "order by d.serialNumber")
+    List<DeviceListing> findListingPageAfter(String searchBy, String after, Limit limit);
+
+    /**
+     * Serial numbers of the given users' devices containing the term, at most {@code perUser} per user.
+     * The window function keeps the result bounded by the page of users, not by how many devices they own.
+     */
+    @Query(value = "select m.user_id as userId, m.serial_number as serialNumber from (" +
+            "select d.user_id, d.serial_number, row_number() over (partition by d.user_id order by d.serial_number) as position " +
+            "from devices d where d.user_id in ?1 AND lower(d.serial_number) LIKE concat('%', lower(?2), '%')" +
+            ") m where m.position <= ?3 order by m.user_id, m.serial_number", nativeQuery = true)
+    List<SerialNumberMatch> findMatchingSerialNumbers(Collection<Long> userIds, String searchBy, int perUser);
+
+    @Query("select count(d) from Device d where " + SEARCH_FILTER)
+    long countBySearch(String searchBy);
+
+    @Transactional
+    @Modifying
+    @Query(value = REFRESH_SEARCH_DOCUMENT + "where user_id = ?1", nativeQuery = true)
+    void refreshSearchDocumentsOfUser(Long userId);
+
+    @Transactional
+    @Modifying
+    @Query(value = REFRESH_SEARCH_DOCUMENT + "where passport_id = ?1", nativeQuery = true)
+    void refreshSearchDocumentsOfPassport(Long passportId);
+
+    @EntityGraph(Device.DETAIL_GRAPH)
+    List<Device> findByUserId(Long userId);
+
+    @Query("select d.serialNumber from Device d where d.serialNumber in ?1")
+    Set<String> findExistingSerialNumbers(Collection<String> serialNumbers);
 }
\ No newline at end of file
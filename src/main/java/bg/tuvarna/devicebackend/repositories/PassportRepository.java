@@ -9,10 +9,13 @@ import java.util.List;
 
 @Repository
 public interface PassportRepository extends JpaRepository<Passport, Long> {
-    @Query("select p from Passport p where p.serialPrefix like :serialPrefix and p.fromSerialNumber between :fromSerialNumberStart and :toSerialNumber" +
-            " or p.serialPrefix like :serialPrefix and p.toSerialNumber between :fromSerialNumberStart and :toSerialNumber")
-    List<Passport> findByFromSerialNumberBetween(String serialPrefix, int fromSerialNumberStart, int toSerialNumber);
-
     @Query("select p from Passport p where :serialId LIKE CONCAT(p.serialPrefix, '%')")
     List<Passport> findByFromSerial(String serialId);
+
+    /**
+     * Passports of the prefix whose range shares at least one serial number with [from, to].
+     * Checked under {@link bg.tuvarna.devicebackend.services.PassportWriteLock}, so it sees the writes of every node.
+     */
+    @Query("select p from Passport p where p.serialPrefix = :serialPrefix and p.fromSerialNumber <= :to and p.toSerialNumber >= :from")
+    List<Passport> findOverlapping(String serialPrefix, int from, int to);
 }
\ No newline at end of file
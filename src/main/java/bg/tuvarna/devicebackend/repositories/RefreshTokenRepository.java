@@ -0,0 +1,39 @@
+package bg.tuvarna.devicebackend.repositories;
+
+import bg.tuvarna.devicebackend.models.entities.RefreshToken;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Optional;
+
+@Repository
+public interface RefreshTokenRepository extends JpaRepository<RefreshToken, Long> {
+    Optional<RefreshToken> findByTokenHash(String tokenHash);
+
+    /**
+     * Marks the token used unless another request already did, so only one of two concurrent refreshes wins.
+     */
+    @Transactional
+    @Modifying
+    @Query("update RefreshToken t set t.usedAt = ?2 where t.id = ?1 AND t.usedAt is null")
+    int markUsed(Long id, Instant usedAt);
+
+    @Transactional
+    @Modifying
+    @Query("delete from RefreshToken t where t.familyId = ?1")
+    int deleteByFamilyId(String familyId);
+
+    @Transactional
+    @Modifying
+    @Query("delete from RefreshToken t where t.userId = ?1")
+    int deleteByUserId(Long userId);
+
+    @Transactional
+    @Modifying
+    @Query("delete from RefreshToken t where t.expiresAt < ?1")
+    int deleteExpired(Instant now);
+}
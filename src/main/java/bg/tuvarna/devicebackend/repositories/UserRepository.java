@@ -1,38 +1,98 @@
 package bg.tuvarna.devicebackend.repositories;
 
+import bg.tuvarna.devicebackend.models.dtos.PrincipalVO;
+import bg.tuvarna.devicebackend.models.dtos.UserCredentialsVO;
+import bg.tuvarna.devicebackend.models.dtos.UserListing;
 import bg.tuvarna.devicebackend.models.entities.User;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
     User getByEmail(String email);
 
+    @EntityGraph(User.DETAIL_GRAPH)
+    Optional<User> findDetailById(Long id);
+
     @Query("select u from User u where u.email = ?1 OR u.phone = ?1")
     Optional<User> findByEmailOrPhone(String email);
 
     User getByPhone(String phone);
 
-    @Query("select distinct u from User u " +
-            "left join u.devices d " +
-            "left join d.passport p " +
-            "where u.role!='ADMIN' AND (?1 is null OR ( ?1 is not null AND lower(u.fullName) LIKE concat('%',lower(?1),'%') OR " +
-            "lower(u.address) LIKE concat('%',lower(?1),'%') OR " +
-            "lower(u.email) LIKE concat('%',lower(?1),'%') OR " +
-            "lower(u.phone) LIKE concat('%',lower(?1),'%') OR " +
-            "lower(p.name) LIKE concat('%',lower(?1),'%') OR " +
-            "lower(p.model) LIKE concat('%',lower(?1),'%') OR " +
-            "lower(d.serialNumber) LIKE concat('%',lower(?1),'%')))")
+    @Query("select new bg.tuvarna.devicebackend.models.dtos.UserCredentialsVO(u.id, u.fullName, u.address, u.phone, u.email, u.password, u.role) " +
+            "from User u where u.email = ?1 OR u.phone = ?1")
+    Optional<UserCredentialsVO> findCredentialsByUsername(String username);
+
+    /**
+     * Replaces the hash only if it is still the one that was verified, so a concurrent password change wins.
+     */
+    @Transactional
+    @Modifying
+    @Query("update User u set u.password = ?3 where u.id = ?1 AND u.password = ?2")
+    int replacePassword(Long id, String currentHash, String newHash);
+
+    @Query("select new bg.tuvarna.devicebackend.models.dtos.PrincipalVO(u.id, u.role, u.email, u.tokenVersion) from User u where u.id = ?1")
+    Optional<PrincipalVO> findPrincipalById(Long id);
+
+    @Transactional
+    @Modifying
+    @Query("update User u set u.tokenVersion = u.tokenVersion + 1 where u.id = ?1")
+    int incrementTokenVersion(Long id);
+
+    /**
+     * Matches the user's own search document, or the document of any of the user's devices,
+     * which also carries the serial number and passport. Both are served by trigram indexes in PostgreSQL,
+     * and the exists keeps a user with many devices a single row.
+     */
+    String SEARCH_FILTER = "(u.searchDocument LIKE concat('%',lower(?1),'%') OR " +
+            "exists (select 1 from Device d where d.user = u AND d.searchDocument LIKE concat('%',lower(?1),'%')))";
+
+    @Query("select u from User u " +
+            "where u.role!='ADMIN' AND (?1 is null OR " + SEARCH_FILTER + ")")
     Page<User> searchBy(String searchBy, Pageable pageable);
 
-    @Query("select distinct u from User u " +
-            "left join u.devices d " +
-            "left join d.passport p " +
-            "where u.role!='ADMIN'")
-    Page<User> getAllUsers(Pageable pageable);
+    /**
+     * Columns of the admin table only, the devices counted in SQL.
+     */
+    String LISTING_SELECT = "select new bg.tuvarna.devicebackend.models.dtos.UserListing(" +
+            "u.id, u.fullName, u.address, u.phone, u.email, (select count(d) from Device d where d.user = u)) " +
+            "from User u ";
+
+    @Query(value = LISTING_SELECT + "where u.role!='ADMIN'",
+            countQuery = "select count(u) from User u where u.role!='ADMIN'")
+    Page<UserListing> findListing(Pageable pageable);
+
+    @Query(value = LISTING_SELECT + "where u.role!='ADMIN' AND " + SEARCH_FILTER,
+            countQuery = "select count(u) from User u where u.role!='ADMIN' AND " + SEARCH_FILTER)
+    Page<UserListing> searchListing(String searchBy, Pageable pageable);
+
+    @Query(LISTING_SELECT + "where u.id in ?1")
+    List<UserListing> findListingByIdIn(Collection<Long> ids);
+
+    @Query(LISTING_SELECT +
+            "where u.role!='ADMIN' AND (?1 is null OR u.id > ?1) " +
+            "order by u.id")
+    List<UserListing> findListingPageAfter(Long after, Limit limit);
+
+    @Query(LISTING_SELECT +
+            "where u.role!='ADMIN' AND (?2 is null OR u.id > ?2) AND " + SEARCH_FILTER + " " +
+            "order by u.id")
+    List<UserListing> searchListingPageAfter(String searchBy, Long after, Limit limit);
+
+    @Query("select count(u) from User u where u.role!='ADMIN'")
+    long countListed();
+
+    @Query("select count(u) from User u where u.role!='ADMIN' AND " + SEARCH_FILTER)
+    long countBySearch(String searchBy);
 }
\ No newline at end of file
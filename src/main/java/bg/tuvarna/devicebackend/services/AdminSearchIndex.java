@@ -0,0 +1,448 @@
+package bg.tuvarna.devicebackend.services;
+
+import bg.tuvarna.devicebackend.models.entities.Device;
+import bg.tuvarna.devicebackend.models.entities.Passport;
+import bg.tuvarna.devicebackend.models.entities.User;
+import bg.tuvarna.devicebackend.models.enums.UserRole;
+import bg.tuvarna.devicebackend.utils.SearchDocuments;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Optional in-process inverted trigram index over the admin search fields.
+ * Device documents hold the serial number, passport name and model and the owner's contact details,
+ * user documents the user's own contact details, the same layout as the stored search documents.
+ * A search intersects the posting sets of the term's trigrams and verifies the candidates,
+ * so the database only loads the requested page by id.
+ * Enabled with {@code search.in-memory.enabled=true}, otherwise every method is a no-op.
+ * Writes made by other instances of the service show up after the next {@link #refresh()}.
+ */
+@Service
+public class AdminSearchIndex {
+    private static final Logger logger = LoggerFactory.getLogger(AdminSearchIndex.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean enabled;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final NGramIndex<String> devices = new NGramIndex<>();
+    private final NGramIndex<Long> users = new NGramIndex<>();
+    private final Map<String, DeviceEntry> deviceEntries = new HashMap<>();
+    private final Map<Long, Set<String>> devicesByPassport = new HashMap<>();
+    private final Map<Long, Set<String>> devicesByUser = new HashMap<>();
+    private final Map<Long, PassportFields> passports = new HashMap<>();
+    private final Map<Long, UserFields> owners = new HashMap<>();
+    // Counts the writes, so a refresh can tell that the rows it loaded are already older than the index.
+    private long changes;
+
+    public AdminSearchIndex(JdbcTemplate jdbcTemplate, @Value("${search.in-memory.enabled:false}") boolean enabled) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @PostConstruct
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+
+        load(true);
+        logger.info("Admin search index built with {} devices and {} users", deviceEntries.size(), owners.size());
+    }
+
+    /**
+     * Reloads the index from the database, which brings in the writes of other instances of the service.
+     */
+    @Scheduled(
+            initialDelayString = "${search.in-memory.refresh-interval:PT1M}",
+            fixedDelayString = "${search.in-memory.refresh-interval:PT1M}"
+    )
+    public void refresh() {
+        if (!enabled) {
+            return;
+        }
+
+        if (load(false)) {
+            logger.debug("Admin search index refreshed with {} devices and {} users", deviceEntries.size(), owners.size());
+        } else {
+            logger.debug("Admin search index changed while refreshing, retrying on the next refresh");
+        }
+    }
+
+    private boolean load(boolean initial) {
+        long changesBefore = changes();
+
+        Map<Long, PassportFields> loadedPassports = new HashMap<>();
+        List<UserRow> loadedUsers = new ArrayList<>();
+        List<DeviceRow> loadedDevices = new ArrayList<>();
+        jdbcTemplate.query("select id, name, model from passports", rs -> {
+            loadedPassports.put(rs.getLong("id"), new PassportFields(rs.getString("name"), rs.getString("model")));
+        });
+        jdbcTemplate.query("select id, full_name, address, email, phone, role from users", rs -> {
+            UserFields fields = new UserFields(rs.getString("full_name"), rs.getString("address"), rs.getString("email"), rs.getString("phone"));
+            String role = rs.getString("role");
+            loadedUsers.add(new UserRow(rs.getLong("id"), fields, role != null && !UserRole.ADMIN.name().equals(role)));
+        });
+        jdbcTemplate.query("select serial_number, passport_id, user_id from devices", rs -> {
+            loadedDevices.add(new DeviceRow(rs.getString("serial_number"), rs.getObject("passport_id", Long.class), rs.getObject("user_id", Long.class)));
+        });
+
+        lock.writeLock().lock();
+        try {
+            if (!initial && changes != changesBefore) {
+                return false;
+            }
+
+            devices.clear();
+            users.clear();
+            deviceEntries.clear();
+            devicesByPassport.clear();
+            devicesByUser.clear();
+            passports.clear();
+            owners.clear();
+
+            passports.putAll(loadedPassports);
+            loadedUsers.forEach(row -> indexUser(row.id(), row.fields(), row.listed()));
+            loadedDevices.forEach(row -> indexDevice(row.serialNumber(), row.passportId(), row.userId()));
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private long changes() {
+        lock.readLock().lock();
+        try {
+            return changes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Serial numbers of the matching devices, in ascending order.
+     */
+    public List<String> searchDevices(String term) {
+        lock.readLock().lock();
+        try {
+            return List.copyOf(devices.search(normalize(term)));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Ids of the non-admin users matching the term themselves or through one of their devices, in ascending order.
+     */
+    public List<Long> searchUsers(String term) {
+        String normalized = normalize(term);
+
+        lock.readLock().lock();
+        try {
+            TreeSet<Long> result = users.search(normalized);
+            for (String serialNumber : devices.search(normalized)) {
+                Long userId = deviceEntries.get(serialNumber).userId();
+                if (userId != null && users.contains(userId)) {
+                    result.add(userId);
+                }
+            }
+            return List.copyOf(result);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void putDevice(Device device) {
+        putDevice(device.getSerialNumber(), device.getPassport(), device.getUser());
+    }
+
+    public void putDevice(String serialNumber, Passport passport, User user) {
+        if (!enabled) {
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (passport != null && passport.getId() != null) {
+                passports.put(passport.getId(), new PassportFields(passport.getName(), passport.getModel()));
+            }
+            if (user != null && user.getId() != null) {
+                indexUser(user.getId(), UserFields.of(user), isListed(user));
+            }
+            indexDevice(serialNumber, passport != null ? passport.getId() : null, user != null ? user.getId() : null);
+            changes++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeDevice(String serialNumber) {
+        if (!enabled) {
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            unindexDevice(serialNumber);
+            changes++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Indexes the user and re-indexes the user's devices, whose documents carry the contact details.
+     */
+    public void putUser(User user) {
+        if (!enabled || user.getId() == null) {
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            indexUser(user.getId(), UserFields.of(user), isListed(user));
+            reindexDevices(devicesByUser.get(user.getId()));
+            changes++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeUser(Long id) {
+        if (!enabled) {
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            owners.remove(id);
+            users.remove(id);
+            changes++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Re-indexes the devices of the passport after its name or model changed.
+     */
+    public void putPassport(Passport passport) {
+        if (!enabled || passport.getId() == null) {
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            passports.put(passport.getId(), new PassportFields(passport.getName(), passport.getModel()));
+            reindexDevices(devicesByPassport.get(passport.getId()));
+            changes++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Owners' details are kept for every user, but only users shown in the admin listing are searchable.
+     */
+    private void indexUser(Long id, UserFields fields, boolean listed) {
+        owners.put(id, fields);
+        if (listed) {
+            users.put(id, SearchDocuments.of(fields.fullName(), fields.address(), fields.email(), fields.phone()));
+        } else {
+            users.remove(id);
+        }
+    }
+
+    private static boolean isListed(User user) {
+        return user.getRole() != null && user.getRole() != UserRole.ADMIN;
+    }
+
+    private void indexDevice(String serialNumber, Long passportId, Long userId) {
+        unindexDevice(serialNumber);
+
+        deviceEntries.put(serialNumber, new DeviceEntry(passportId, userId));
+        if (passportId != null) {
+            devicesByPassport.computeIfAbsent(passportId, k -> new HashSet<>()).add(serialNumber);
+        }
+        if (userId != null) {
+            devicesByUser.computeIfAbsent(userId, k -> new HashSet<>()).add(serialNumber);
+        }
+        devices.put(serialNumber, deviceDocument(serialNumber, passportId, userId));
+    }
+
+    private void unindexDevice(String serialNumber) {
+        DeviceEntry entry = deviceEntries.remove(serialNumber);
+        if (entry == null) {
+            return;
+        }
+
+        removeFrom(devicesByPassport, entry.passportId(), serialNumber);
+        removeFrom(devicesByUser, entry.userId(), serialNumber);
+        devices.remove(serialNumber);
+    }
+
+    private void reindexDevices(Collection<String> serialNumbers) {
+        if (serialNumbers == null) {
+            return;
+        }
+
+        for (String serialNumber : serialNumbers) {
+            DeviceEntry entry = deviceEntries.get(serialNumber);
+            devices.put(serialNumber, deviceDocument(serialNumber, entry.passportId(), entry.userId()));
+        }
+    }
+
+    private String deviceDocument(String serialNumber, Long passportId, Long userId) {
+        PassportFields passport = passportId != null ? passports.get(passportId) : null;
+        UserFields user = userId != null ? owners.get(userId) : null;
+
+        return SearchDocuments.of(
+                serialNumber,
+                passport != null ? passport.name() : null,
+                passport != null ? passport.model() : null,
+                user != null ? user.fullName() : null,
+                user != null ? user.address() : null,
+                user != null ? user.email() : null,
+                user != null ? user.phone() : null
+        );
+    }
+
+    private static <K> void removeFrom(Map<K, Set<String>> map, K key, String serialNumber) {
+        if (key == null) {
+            return;
+        }
+
+        Set<String> values = map.get(key);
+        if (values != null) {
+            values.remove(serialNumber);
+            if (values.isEmpty()) {
+                map.remove(key);
+            }
+        }
+    }
+
+    private static String normalize(String term) {
+        return term == null ? "" : term.toLowerCase(Locale.ROOT);
+    }
+
+    private record UserRow(Long id, UserFields fields, boolean listed) {
+    }
+
+    private record DeviceRow(String serialNumber, Long passportId, Long userId) {
+    }
+
+    private record DeviceEntry(Long passportId, Long userId) {
+    }
+
+    private record PassportFields(String name, String model) {
+    }
+
+    private record UserFields(String fullName, String address, String email, String phone) {
+        private static UserFields of(User user) {
+            return new UserFields(user.getFullName(), user.getAddress(), user.getEmail(), user.getPhone());
+        }
+    }
+
+    private static final class NGramIndex<K extends Comparable<K>> {
+        private static final int GRAM_LENGTH = 3;
+
+        private final Map<K, String> documents = new HashMap<>();
+        private final Map<String, Set<K>> postings = new HashMap<>();
+
+        private void put(K key, String document) {
+            remove(key);
+            documents.put(key, document);
+            for (String gram : grams(document)) {
+                postings.computeIfAbsent(gram, k -> new HashSet<>()).add(key);
+            }
+        }
+
+        private void remove(K key) {
+            String document = documents.remove(key);
+            if (document == null) {
+                return;
+            }
+
+            for (String gram : grams(document)) {
+                Set<K> keys = postings.get(gram);
+                if (keys != null) {
+                    keys.remove(key);
+                    if (keys.isEmpty()) {
+                        postings.remove(gram);
+                    }
+                }
+            }
+        }
+
+        private boolean contains(K key) {
+            return documents.containsKey(key);
+        }
+
+        private void clear() {
+            documents.clear();
+            postings.clear();
+        }
+
+        /**
+         * Terms shorter than a trigram can't use the postings and are matched against every document.
+         */
+        private TreeSet<K> search(String term) {
+            TreeSet<K> result = new TreeSet<>();
+            if (term.length() < GRAM_LENGTH) {
+                documents.forEach((key, document) -> {
+                    if (document.contains(term)) {
+                        result.add(key);
+                    }
+                });
+                return result;
+            }
+
+            Set<K> smallest = null;
+            for (String gram : grams(term)) {
+                Set<K> keys = postings.get(gram);
+                if (keys == null) {
+                    return result;
+                }
+                if (smallest == null || keys.size() < smallest.size()) {
+                    smallest = keys;
+                }
+            }
+
+            for (K key : smallest) {
+                if (documents.get(key).contains(term)) {
+                    result.add(key);
+                }
+            }
+            return result;
+        }
+
+        private static Set<String> grams(String text) {
+            Set<String> grams = new HashSet<>();
+            for (int i = 0; i + GRAM_LENGTH <= text.length(); i++) {
+                grams.add(text.substring(i, i + GRAM_LENGTH));
+            }
+            return grams;
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package bg.tuvarna.devicebackend.services;
+
+import bg.tuvarna.devicebackend.controllers.exceptions.CustomException;
+import bg.tuvarna.devicebackend.controllers.exceptions.ErrorCode;
+import bg.tuvarna.devicebackend.models.dtos.DeviceCreateVO;
+import bg.tuvarna.devicebackend.models.dtos.DeviceImportResultVO;
+import bg.tuvarna.devicebackend.models.entities.Device;
+import bg.tuvarna.devicebackend.models.entities.Passport;
+import bg.tuvarna.devicebackend.repositories.DeviceRepository;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Registers anonymous devices in bulk.
+ * The uploaded JSON array is read in chunks; every chunk is checked against existing serial numbers with one query,
+ * resolved against the passport index in one pass and inserted with one JDBC batch.
+ * When the batch fails, its rows are inserted one at a time, so only the rows that fail are reported as failed.
+ */
+@Service
+@RequiredArgsConstructor
+public class DeviceImportService {
+    private static final Logger logger = LoggerFactory.getLogger(DeviceImportService.class);
+
+    private static final int BATCH_SIZE = 500;
+    private static final String INSERT_SQL = "insert into devices " +
+            "(serial_number, purchase_date, warranty_expiration_date, passport_id, search_document) " +
+            "values (?, ?, ?, ?, ?)";
+
+    private final DeviceRepository deviceRepository;
+    private final PassportService passportService;
+    private final AdminSearchIndex searchIndex;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+
+    /**
+     * Reads a JSON array of {@link DeviceCreateVO} and reports the outcome of every entry to {@code results},
+     * one chunk at a time, so callers can stream them back while the upload is still being processed.
+     */
+    public void registerDevices(InputStream body, Consumer<List<DeviceImportResultVO>> results) throws IOException {
+        Set<String> seen = new HashSet<>();
+        List<DeviceCreateVO> chunk = new ArrayList<>(BATCH_SIZE);
+        List<DeviceImportResultVO> rejected = new ArrayList<>();
+
+        try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new CustomException("Devices must be sent as a JSON array", ErrorCode.Validation);
+            }
+
+            JsonToken token;
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                if (token == null) {
+                    throw new CustomException("Devices array is not closed", ErrorCode.Validation);
+                }
+                // Each entry is read as a tree first, so an entry that doesn't map only fails itself.
+                JsonNode entry = objectMapper.readTree(parser);
+                try {
+                    chunk.add(toDevice(entry));
+                } catch (CustomException e) {
+                    rejected.add(DeviceImportResultVO.failed(entry != null ? entry.path("deviceSerialNumber").asText(null) : null, e));
+                }
+
+                if (chunk.size() + rejected.size() == BATCH_SIZE) {
+                    results.accept(registerChunk(chunk, rejected, seen));
+                    chunk.clear();
+                    rejected.clear();
+                }
+            }
+        }
+
+        if (!chunk.isEmpty() || !rejected.isEmpty()) {
+            results.accept(registerChunk(chunk, rejected, seen));
+        }
+    }
+
+    private DeviceCreateVO toDevice(JsonNode entry) {
+        if (entry == null || !entry.isObject()) {
+            throw new CustomException("Device must be a JSON object", ErrorCode.Validation);
+        }
+        try {
+            return objectMapper.treeToValue(entry, DeviceCreateVO.class);
+        } catch (JsonProcessingException | IllegalArgumentException e) {
+            throw new CustomException("Device is not valid", ErrorCode.Validation);
+        }
+    }
+
+    private List<DeviceImportResultVO> registerChunk(List<DeviceCreateVO> chunk, List<DeviceImportResultVO> rejected, Set<String> seen) {
+        List<DeviceImportResultVO> results = new ArrayList<>(chunk.size() + rejected.size());
+        results.addAll(rejected);
+        List<DeviceCreateVO> candidates = new ArrayList<>(chunk.size());
+
+        for (DeviceCreateVO device : chunk) {
+            Set<ConstraintViolation<DeviceCreateVO>> violations = validator.validate(device);
+            if (!violations.isEmpty()) {
+                results.add(DeviceImportResultVO.failed(device.deviceSerialNumber(), new CustomException(
+                        "Validation error",
+                        ErrorCode.Validation,
+                        violations.stream().map(ConstraintViolation::getMessage).toArray(String[]::new)
+                )));
+            } else if (!seen.add(device.deviceSerialNumber())) {
+                results.add(DeviceImportResultVO.failed(device.deviceSerialNumber(), new CustomException("Device already registered", ErrorCode.AlreadyExists)));
+            } else {
+                candidates.add(device);
+            }
+        }
+
+        List<String> serialNumbers = candidates.stream().map(DeviceCreateVO::deviceSerialNumber).toList();
+        Set<String> existing = serialNumbers.isEmpty() ? Set.of() : deviceRepository.findExistingSerialNumbers(serialNumbers);
+        Map<String, Passport> passports = passportService.findPassportsBySerialIds(serialNumbers);
+
+        List<PendingDevice> pending = new ArrayList<>(candidates.size());
+        for (DeviceCreateVO device : candidates) {
+            Passport passport = passports.get(device.deviceSerialNumber());
+            if (existing.contains(device.deviceSerialNumber())) {
+                results.add(DeviceImportResultVO.failed(device.deviceSerialNumber(), new CustomException("Device already registered", ErrorCode.AlreadyExists)));
+            } else if (passport == null) {
+                results.add(DeviceImportResultVO.failed(device.deviceSerialNumber(), new CustomException("Invalid serial number", ErrorCode.Failed)));
+            } else {
+                pending.add(new PendingDevice(
+                        device.deviceSerialNumber(),
+                        device.purchaseDate(),
+                        device.purchaseDate().plusMonths(passport.getWarrantyMonths()),
+                        passport
+                ));
+            }
+        }
+
+        results.addAll(insert(pending));
+        return results;
+    }
+
+    private List<DeviceImportResultVO> insert(List<PendingDevice> pending) {
+        if (pending.isEmpty()) {
+            return List.of();
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                    jdbcTemplate.batchUpdate(INSERT_SQL, pending, pending.size(), DeviceImportService::bind)
+            );
+        } catch (DataAccessException e) {
+            // A single bad row fails the whole batch, e.g. a serial number registered since the existence check
+            // or a passport deleted since it was resolved, so the rows are retried one by one to find it.
+            logger.warn("Device registration batch failed, inserting its {} devices one by one: {}", pending.size(), e.getMessage());
+            return pending.stream().map(this::insertOne).toList();
+        }
+
+        pending.forEach(device -> searchIndex.putDevice(device.serialNumber(), device.passport(), null));
+
+        return pending.stream()
+                .map(device -> DeviceImportResultVO.registered(device.serialNumber(), device.warrantyExpirationDate()))
+                .toList();
+    }
+
+    private DeviceImportResultVO insertOne(PendingDevice device) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.update(INSERT_SQL, ps -> bind(ps, device)));
+        } catch (DuplicateKeyException e) {
+            return DeviceImportResultVO.failed(device.serialNumber(), new CustomException("Device already registered", ErrorCode.AlreadyExists));
+        } catch (DataAccessException e) {
+            logger.error("Device registration failed for {}", device.serialNumber(), e);
+            return DeviceImportResultVO.failed(device.serialNumber(), new CustomException("Failed to register device", ErrorCode.Failed));
+        }
+
+        searchIndex.putDevice(device.serialNumber(), device.passport(), null);
+        return DeviceImportResultVO.registered(device.serialNumber(), device.warrantyExpirationDate());
+    }
+
+    private static void bind(PreparedStatement ps, PendingDevice device) throws SQLException {
+        ps.setString(1, device.serialNumber());
+        ps.setDate(2, Date.valueOf(device.purchaseDate()));
+        ps.setDate(3, Date.valueOf(device.warrantyExpirationDate()));
+        ps.setLong(4, device.passport().getId());
+        ps.setString(5, Device.searchDocumentOf(device.serialNumber(), device.passport(), null));
+    }
+
+    private record PendingDevice(String serialNumber, LocalDate purchaseDate, LocalDate warrantyExpirationDate, Passport passport) {
+    }
+}
@@ -3,25 +3,39 @@ package bg.tuvarna.devicebackend.services;
 import bg.tuvarna.devicebackend.controllers.exceptions.CustomException;
 import bg.tuvarna.devicebackend.controllers.exceptions.ErrorCode;
 import bg.tuvarna.devicebackend.models.dtos.DeviceCreateVO;
+import bg.tuvarna.devicebackend.models.dtos.DeviceListing;
 import bg.tuvarna.devicebackend.models.dtos.DeviceUpdateVO;
+import bg.tuvarna.devicebackend.models.dtos.SerialNumberMatch;
 import bg.tuvarna.devicebackend.models.entities.Device;
 import bg.tuvarna.devicebackend.models.entities.Passport;
 import bg.tuvarna.devicebackend.models.entities.User;
 import bg.tuvarna.devicebackend.repositories.DeviceRepository;
+import bg.tuvarna.devicebackend.utils.CursorPage;
+import bg.tuvarna.devicebackend.utils.Cursors;
 import bg.tuvarna.devicebackend.utils.CustomPage;
 import jakarta.transaction.Transactional;
 import lombok.AllArgsConstructor;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @AllArgsConstructor
 public class DeviceService {
+    private static final int MAX_CURSOR_PAGE_SIZE = 100;
+
     private final DeviceRepository deviceRepository;
     private final PassportService passportService;
+    private final AdminSearchIndex searchIndex;
 
     public Device registerDevice(String serialId, LocalDate purchaseDate, User user) {
         try {
@@ -34,20 +48,25 @@ public class DeviceService {
             device.setPurchaseDate(purchaseDate);
             device.setWarrantyExpirationDate(purchaseDate.plusMonths(passport.getWarrantyMonths()).plusMonths(12));
 
-            return deviceRepository.save(device);
+            Device saved = deviceRepository.save(device);
+            searchIndex.putDevice(saved);
+            return saved;
         } catch (RuntimeException e) {
             throw new CustomException("Invalid serial number", ErrorCode.Failed);
         }
     }
 
     public Device findDevice(String id) {
-        return deviceRepository.findById(id).orElse(null);
+        return deviceRepository.findDetailBySerialNumber(id).orElse(null);
+    }
+
+    public List<Device> findDevicesOfUser(Long userId) {
+        return deviceRepository.findByUserId(userId);
     }
 
     public Device isDeviceExists(String id) {
-        if (!deviceRepository.existsById(id))
-            throw new CustomException("Device not registered", ErrorCode.NotRegistered);
-        return findDevice(id);
+        return deviceRepository.findDetailBySerialNumber(id)
+                .orElseThrow(() -> new CustomException("Device not registered", ErrorCode.NotRegistered));
     }
 
     public Device registerNewDevice(DeviceCreateVO deviceCreateVO, User user) {
@@ -61,12 +80,12 @@ public class DeviceService {
     }
 
     public void alreadyExist(String serialNumber) {
-        if (findDevice(serialNumber) != null)
+        if (deviceRepository.existsById(serialNumber))
             throw new CustomException("Device already registered", ErrorCode.AlreadyExists);
     }
 
     public Device updateDevice(String serialNumber, DeviceUpdateVO device) {
-        Device deviceToUpdate = deviceRepository.findById(serialNumber).orElseThrow(() -> new CustomException("Device not found", ErrorCode.EntityNotFound));
+        Device deviceToUpdate = deviceRepository.findDetailBySerialNumber(serialNumber).orElseThrow(() -> new CustomException("Device not found", ErrorCode.EntityNotFound));
 
         deviceToUpdate.setPurchaseDate(device.purchaseDate());
 
@@ -87,11 +106,19 @@ public class DeviceService {
     public void deleteDevice(String serialNumber) {
         try {
             deviceRepository.deleteBySerialNumber(serialNumber);
+            searchIndex.removeDevice(serialNumber);
         } catch (RuntimeException e) {
             throw new CustomException("Cannot delete device: renovations exist", ErrorCode.Failed);
         }
     }
 
+    /**
+     * Device search documents carry the owner's contact details, so they are rebuilt when the owner changes.
+     */
+    public void refreshSearchDocumentsOfUser(Long userId) {
+        deviceRepository.refreshSearchDocumentsOfUser(userId);
+    }
+
     public Device addAnonymousDevice(DeviceCreateVO device) {
         alreadyExist(device.deviceSerialNumber());
         try {
@@ -103,21 +130,22 @@ public class DeviceService {
             deviceToAdd.setPassport(passport);
             deviceToAdd.setWarrantyExpirationDate(device.purchaseDate().plusMonths(passport.getWarrantyMonths()));
 
-            return deviceRepository.save(deviceToAdd);
+            Device saved = deviceRepository.save(deviceToAdd);
+            searchIndex.putDevice(saved);
+            return saved;
         } catch (RuntimeException e) {
             throw new CustomException("Invalid serial number", ErrorCode.Failed);
         }
     }
 
-    public CustomPage<Device> getDevices(String searchBy, int page, int size) {
-        Page<Device> devicePage;
-        if (searchBy == null) {
-            devicePage = deviceRepository.getAllDevices(PageRequest.of(page - 1, size));
-        } else {
-            devicePage = deviceRepository.findAll(searchBy, PageRequest.of(page - 1, size));
+    public CustomPage<DeviceListing> getDevices(String searchBy, int page, int size) {
+        if (searchBy != null && searchIndex.isEnabled()) {
+            return getIndexedDevices(searchBy, page, size);
         }
 
-        CustomPage<Device> customPage = new CustomPage<>();
+        Page<DeviceListing> devicePage = deviceRepository.findListing(searchBy, PageRequest.of(page - 1, size));
+
+        CustomPage<DeviceListing> customPage = new CustomPage<>();
         customPage.setItems(devicePage.getContent());
         customPage.setTotalItems(devicePage.getTotalElements());
         customPage.setTotalPages(devicePage.getTotalPages());
@@ -126,4 +154,67 @@ public class DeviceService {
 
         return customPage;
     }
-}
\ No newline at end of file
+
+    /**
+     * Resolves the matching serial numbers in memory and loads only the requested page from the database.
+     */
+    private CustomPage<DeviceListing> getIndexedDevices(String searchBy, int page, int size) {
+        List<String> matches = searchIndex.searchDevices(searchBy);
+        int from = Math.min(Math.max(page - 1, 0) * size, matches.size());
+        List<String> pageIds = matches.subList(from, Math.min(from + size, matches.size()));
+
+        Map<String, DeviceListing> devices = deviceRepository.findListingBySerialNumberIn(pageIds).stream()
+                .collect(Collectors.toMap(DeviceListing::serialNumber, Function.identity()));
+
+        CustomPage<DeviceListing> customPage = new CustomPage<>();
+        customPage.setItems(pageIds.stream().map(devices::get).filter(Objects::nonNull).toList());
+        customPage.setTotalItems(matches.size());
+        customPage.setTotalPages((matches.size() + size - 1) / size);
+        customPage.setCurrentPage(page);
+        customPage.setSize(size);
+
+        return customPage;
+    }
+
+    /**
+     * Serial numbers of each user's devices containing the term, at most {@code perUser} per user.
+     */
+    public Map<Long, List<String>> findMatchingSerialNumbers(Collection<Long> userIds, String searchBy, int perUser) {
+        if (userIds.isEmpty()) {
+            return Map.of();
+        }
+
+        return deviceRepository.findMatchingSerialNumbers(userIds, searchBy, perUser).stream()
+                .collect(Collectors.groupingBy(
+                        SerialNumberMatch::getUserId,
+                        Collectors.mapping(SerialNumberMatch::getSerialNumber, Collectors.toList())
+                ));
+    }
+
+    /**
+     * Seeks through devices ordered by serial number instead of skipping rows with an offset,
+     * so every page costs the same no matter how deep the caller scrolls.
+     * The total is only counted when {@code withTotal} is set.
+     */
+    public CursorPage<DeviceListing> getDevicesAfter(String searchBy, String cursor, int size, boolean withTotal) {
+        if (size < 1 || size > MAX_CURSOR_PAGE_SIZE) {
+            throw new CustomException("Page size must be between 1 and " + MAX_CURSOR_PAGE_SIZE, ErrorCode.Validation);
+        }
+
+        List<DeviceListing> devices = deviceRepository.findListingPageAfter(searchBy, Cursors.decode(cursor), Limit.of(size + 1));
+
+        CursorPage<DeviceListing> cursorPage = new CursorPage<>();
+        cursorPage.setSize(size);
+        if (devices.size() > size) {
+            devices = devices.subList(0, size);
+            cursorPage.setNextCursor(Cursors.encode(devices.get(size - 1).serialNumber()));
+        }
+        cursorPage.setItems(devices);
+
+        if (withTotal) {
+            cursorPage.setTotalItems(deviceRepository.countBySearch(searchBy));
+        }
+
+        return cursorPage;
+    }
+}
@@ -0,0 +1,269 @@
+package bg.tuvarna.devicebackend.services;
+
+import bg.tuvarna.devicebackend.controllers.exceptions.CustomException;
+import bg.tuvarna.devicebackend.controllers.exceptions.ErrorCode;
+import bg.tuvarna.devicebackend.models.dtos.PassportCreateVO;
+import bg.tuvarna.devicebackend.models.dtos.PassportImportResultVO;
+import bg.tuvarna.devicebackend.models.entities.Passport;
+import bg.tuvarna.devicebackend.models.mappers.PassportMapper;
+import bg.tuvarna.devicebackend.repositories.PassportRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Imports passports from a CSV or NDJSON stream.
+ * Rows are read one line at a time, checked for overlaps against the passport index and the rows
+ * accepted so far, and inserted in JDBC batches. The passport write lock is only held while a batch is
+ * rechecked against the database and saved, so single creates are not blocked for the length of a slow upload.
+ * The entity listener adds saved passports to the index once their batch commits.
+ */
+@Service
+@RequiredArgsConstructor
+public class PassportImportService {
+    private static final Logger logger = LoggerFactory.getLogger(PassportImportService.class);
+    public static final MediaType TEXT_CSV = MediaType.valueOf("text/csv");
+    public static final MediaType APPLICATION_NDJSON = MediaType.APPLICATION_NDJSON;
+
+    private static final int BATCH_SIZE = 500;
+    private static final List<String> CSV_HEADER = List.of(
+            "name", "model", "serialprefix", "warrantymonths", "fromserialnumber", "toserialnumber"
+    );
+
+    private final PassportService passportService;
+    private final PassportIndex passportIndex;
+    private final PassportRepository passportRepository;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+
+    public List<PassportImportResultVO> importPassports(InputStream body, MediaType format) throws IOException {
+        boolean csv = TEXT_CSV.isCompatibleWith(format);
+        if (!csv && !APPLICATION_NDJSON.isCompatibleWith(format)) {
+            throw new CustomException("Unsupported import format: " + format, ErrorCode.Validation);
+        }
+
+        List<PassportImportResultVO> results = new ArrayList<>();
+        Map<String, TreeMap<Integer, Integer>> acceptedRanges = new HashMap<>();
+        List<PendingRow> batch = new ArrayList<>(BATCH_SIZE);
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        String line;
+        int row = 0;
+        while ((line = reader.readLine()) != null) {
+            row++;
+            if (line.isBlank() || (csv && row == 1 && isCsvHeader(line))) {
+                continue;
+            }
+
+            try {
+                PassportCreateVO vo = csv ? parseCsv(line) : parseJson(line);
+                validate(vo);
+                reserve(acceptedRanges, vo);
+                batch.add(new PendingRow(row, PassportMapper.toEntity(vo)));
+            } catch (CustomException e) {
+                results.add(PassportImportResultVO.failed(row, e));
+            }
+
+            if (batch.size() == BATCH_SIZE) {
+                results.addAll(flush(acceptedRanges, batch));
+                batch.clear();
+            }
+        }
+        results.addAll(flush(acceptedRanges, batch));
+
+        results.sort(Comparator.comparingInt(PassportImportResultVO::row));
+        return results;
+    }
+
+    private void validate(PassportCreateVO vo) {
+        Set<ConstraintViolation<PassportCreateVO>> violations = validator.validate(vo);
+        if (!violations.isEmpty()) {
+            throw new CustomException(
+                    "Validation error",
+                    ErrorCode.Validation,
+                    violations.stream().map(ConstraintViolation::getMessage).toArray(String[]::new)
+            );
+        }
+        if (vo.fromSerialNumber() > vo.toSerialNumber()) {
+            throw new CustomException("From serial number can't be greater than to serial number", ErrorCode.Validation);
+        }
+    }
+
+    private void reserve(Map<String, TreeMap<Integer, Integer>> acceptedRanges, PassportCreateVO vo) {
+        TreeMap<Integer, Integer> ranges = acceptedRanges.computeIfAbsent(vo.serialPrefix(), k -> new TreeMap<>());
+        Map.Entry<Integer, Integer> previous = ranges.floorEntry(vo.toSerialNumber());
+
+        boolean overlapsBatch = previous != null && previous.getValue() >= vo.fromSerialNumber();
+        if (overlapsBatch || !passportIndex.findOverlapping(vo.serialPrefix(), vo.fromSerialNumber(), vo.toSerialNumber()).isEmpty()) {
+            throw new CustomException("Serial number already exists", ErrorCode.AlreadyExists);
+        }
+
+        ranges.put(vo.fromSerialNumber(), vo.toSerialNumber());
+    }
+
+    /**
+     * Rechecks the batch against the database under the write lock, since a create on this or another node may
+     * have taken one of its ranges while the batch was being read, and saves the rows that are still free.
+     */
+    private List<PassportImportResultVO> flush(Map<String, TreeMap<Integer, Integer>> acceptedRanges, List<PendingRow> batch) {
+        if (batch.isEmpty()) {
+            return List.of();
+        }
+
+        try {
+            // Same lock as PassportService.create/update, so no single create can slip between check and insert.
+            return passportService.writeLock().run(() -> saveFreeRows(acceptedRanges, batch));
+        } catch (DataAccessException | TransactionException e) {
+            logger.error("Passport import batch failed", e);
+            // Nothing of the batch was saved, so later rows may use its ranges.
+            batch.forEach(pending -> release(acceptedRanges, pending.passport()));
+            CustomException failure = new CustomException("Failed to save passport", ErrorCode.Failed);
+            return batch.stream().map(pending -> PassportImportResultVO.failed(pending.row(), failure)).toList();
+        }
+    }
+
+    private List<PassportImportResultVO> saveFreeRows(Map<String, TreeMap<Integer, Integer>> acceptedRanges, List<PendingRow> batch) {
+        List<PassportImportResultVO> results = new ArrayList<>(batch.size());
+        List<PendingRow> accepted = new ArrayList<>(batch.size());
+        Map<String, List<Passport>> existing = findExistingRanges(batch);
+
+        for (PendingRow pending : batch) {
+            Passport passport = pending.passport();
+            boolean taken = existing.get(passport.getSerialPrefix()).stream().anyMatch(other ->
+                    other.getFromSerialNumber() <= passport.getToSerialNumber() && other.getToSerialNumber() >= passport.getFromSerialNumber()
+            );
+            if (taken) {
+                release(acceptedRanges, passport);
+                results.add(PassportImportResultVO.failed(pending.row(), new CustomException("Serial number already exists", ErrorCode.AlreadyExists)));
+            } else {
+                accepted.add(pending);
+            }
+        }
+
+        // Ids come from the pooled passports sequence, so Hibernate sends the inserts as one JDBC batch.
+        passportRepository.saveAll(accepted.stream().map(PendingRow::passport).toList());
+        accepted.forEach(pending -> results.add(PassportImportResultVO.imported(pending.row(), pending.passport().getId())));
+        return results;
+    }
+
+    private static void release(Map<String, TreeMap<Integer, Integer>> acceptedRanges, Passport passport) {
+        acceptedRanges.get(passport.getSerialPrefix()).remove(passport.getFromSerialNumber());
+    }
+
+    /**
+     * Loads the stored ranges of every prefix in the batch that fall within the span the batch covers,
+     * one query per prefix instead of one per row.
+     */
+    private Map<String, List<Passport>> findExistingRanges(List<PendingRow> batch) {
+        Map<String, int[]> spans = new HashMap<>();
+        for (PendingRow pending : batch) {
+            Passport passport = pending.passport();
+            spans.merge(
+                    passport.getSerialPrefix(),
+                    new int[]{passport.getFromSerialNumber(), passport.getToSerialNumber()},
+                    (span, range) -> new int[]{Math.min(span[0], range[0]), Math.max(span[1], range[1])}
+            );
+        }
+
+        Map<String, List<Passport>> existing = new HashMap<>();
+        spans.forEach((prefix, span) -> existing.put(prefix, passportRepository.findOverlapping(prefix, span[0], span[1])));
+        return existing;
+    }
+
+    private PassportCreateVO parseJson(String line) {
+        try {
+            return objectMapper.readValue(line, PassportCreateVO.class);
+        } catch (JsonProcessingException e) {
+            throw new CustomException("Row is not a valid passport", ErrorCode.Validation);
+        }
+    }
+
+    private static boolean isCsvHeader(String line) {
+        return splitCsv(line).stream()
+                .map(column -> column.strip().toLowerCase(Locale.ROOT))
+                .toList()
+                .equals(CSV_HEADER);
+    }
+
+    /**
+     * Columns follow {@link PassportCreateVO}: name, model, serialPrefix, warrantyMonths, fromSerialNumber, toSerialNumber.
+     */
+    private static PassportCreateVO parseCsv(String line) {
+        List<String> columns = splitCsv(line);
+        if (columns.size() != 6) {
+            throw new CustomException("Row must have 6 columns", ErrorCode.Validation);
+        }
+
+        try {
+            return new PassportCreateVO(
+                    columns.get(0).strip(),
+                    columns.get(1).strip(),
+                    columns.get(2).strip(),
+                    parseInteger(columns.get(3)),
+                    parseInteger(columns.get(4)),
+                    parseInteger(columns.get(5))
+            );
+        } catch (NumberFormatException e) {
+            throw new CustomException("Row is not a valid passport", ErrorCode.Validation);
+        }
+    }
+
+    private static Integer parseInteger(String value) {
+        return value.isBlank() ? null : Integer.valueOf(value.trim());
+    }
+
+    private static List<String> splitCsv(String line) {
+        List<String> columns = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    current.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                columns.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        columns.add(current.toString());
+
+        return columns;
+    }
+
+    private record PendingRow(int row, Passport passport) {
+    }
+}
@@ -0,0 +1,384 @@
+package bg.tuvarna.devicebackend.services;
+
+import bg.tuvarna.devicebackend.models.entities.Passport;
+import bg.tuvarna.devicebackend.repositories.PassportRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+
+/**
+ * In-memory index of passport serial ranges.
+ * Serial prefixes are stored in a trie and every trie node keeps its ranges sorted by
+ * {@code fromSerialNumber}, so resolving a serial number costs O(prefix length + log n)
+ * without a database round trip.
+ * The index is loaded on startup and kept in sync through {@link bg.tuvarna.devicebackend.models.listeners.PassportIndexListener}.
+ * Writes made by other instances of the service show up after the next {@link #refresh()}.
+ */
+@Service
+@RequiredArgsConstructor
+public class PassportIndex {
+    private static final Logger logger = LoggerFactory.getLogger(PassportIndex.class);
+
+    private final PassportRepository passportRepository;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Passport> passportsById = new HashMap<>();
+    private Node root = new Node();
+    // Counts put and remove calls, so a refresh can tell that the rows it loaded are already older than the index.
+    private long changes;
+
+    @PostConstruct
+    public void rebuild() {
+        load(true);
+        logger.info("Passport index built with {} serial ranges", size());
+    }
+
+    /**
+     * Reloads the index from the database, which brings in the passports other instances saved or deleted.
+     * Overlap checks don't depend on it, since writes check the database under {@link PassportWriteLock}.
+     */
+    @Scheduled(
+            initialDelayString = "${passport-index.refresh-interval:PT1M}",
+            fixedDelayString = "${passport-index.refresh-interval:PT1M}"
+    )
+    public void refresh() {
+        if (load(false)) {
+            logger.debug("Passport index refreshed with {} serial ranges", size());
+        } else {
+            logger.debug("Passport index changed while refreshing, retrying on the next refresh");
+        }
+    }
+
+    private boolean load(boolean initial) {
+        long changesBefore = changes();
+        List<Passport> passports = passportRepository.findAll();
+
+        lock.writeLock().lock();
+        try {
+            if (!initial && changes != changesBefore) {
+                return false;
+            }
+
+            root = new Node();
+            passportsById.clear();
+            passports.forEach(this::insert);
+            root.forEach((prefix, node) -> node.recheck().forEach(pair -> {
+                if (initial) {
+                    logger.warn("Passports {} and {} have overlapping ranges for prefix {}, the lower id wins the lookup",
+                            pair.getFirst().getId(), pair.getLast().getId(), prefix);
+                }
+            }));
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private long changes() {
+        lock.readLock().lock();
+        try {
+            return changes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the passport whose prefix and range contain the serial number.
+     * When several prefixes match, the longest one wins.
+     */
+    public Passport find(String serialId) {
+        if (serialId == null) {
+            return null;
+        }
+
+        lock.readLock().lock();
+        try {
+            return lookup(serialId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Resolves all serial numbers under a single read lock.
+     * Serial numbers without a matching passport are left out of the result.
+     */
+    public Map<String, Passport> findAll(Collection<String> serialIds) {
+        Map<String, Passport> result = new LinkedHashMap<>();
+
+        lock.readLock().lock();
+        try {
+            for (String serialId : serialIds) {
+                Passport passport = serialId != null ? lookup(serialId) : null;
+                if (passport != null) {
+                    result.put(serialId, passport);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the passports of the given prefix whose range shares at least one serial number with [from, to],
+     * including ranges that fully enclose it.
+     */
+    public List<Passport> findOverlapping(String serialPrefix, int from, int to) {
+        if (serialPrefix == null) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            Node node = root;
+            for (int i = 0; i < serialPrefix.length() && node != null; i++) {
+                node = node.children.get(serialPrefix.charAt(i));
+            }
+            return node != null ? node.overlapping(from, to) : List.of();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adds or replaces the passport. Only the previous entry of the same passport is replaced,
+     * ranges of other passports are kept even if they overlap.
+     */
+    public void put(Passport passport) {
+        if (passport.getId() == null || passport.getSerialPrefix() == null) {
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            changes++;
+            delete(passport.getId());
+            if (insert(passport)) {
+                logger.warn("Passport {} overlaps another range of prefix {}", passport.getId(), passport.getSerialPrefix());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long id) {
+        lock.writeLock().lock();
+        try {
+            changes++;
+            delete(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return passportsById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Passport lookup(String serialId) {
+        Passport match = null;
+        Node node = root;
+        for (int i = 0; node != null; i++) {
+            Passport candidate = node.find(serialId, i);
+            if (candidate != null) {
+                match = candidate;
+            }
+            node = i < serialId.length() ? node.children.get(serialId.charAt(i)) : null;
+        }
+        return match;
+    }
+
+    /**
+     * Returns whether the passport overlaps a neighbouring range of its prefix.
+     */
+    private boolean insert(Passport passport) {
+        if (passport.getFromSerialNumber() > passport.getToSerialNumber()) {
+            return false;
+        }
+
+        Node node = root;
+        for (char c : passport.getSerialPrefix().toCharArray()) {
+            node = node.children.computeIfAbsent(c, k -> new Node());
+        }
+
+        Passport snapshot = snapshot(passport);
+        passportsById.put(snapshot.getId(), snapshot);
+        return node.add(snapshot);
+    }
+
+    private void delete(Long id) {
+        Passport existing = passportsById.remove(id);
+        if (existing == null) {
+            return;
+        }
+
+        Node node = root;
+        for (char c : existing.getSerialPrefix().toCharArray()) {
+            node = node.children.get(c);
+            if (node == null) {
+                return;
+            }
+        }
+        node.drop(existing);
+    }
+
+    private static Passport snapshot(Passport passport) {
+        return Passport.builder()
+                .id(passport.getId())
+                .name(passport.getName())
+                .model(passport.getModel())
+                .serialPrefix(passport.getSerialPrefix())
+                .fromSerialNumber(passport.getFromSerialNumber())
+                .toSerialNumber(passport.getToSerialNumber())
+                .warrantyMonths(passport.getWarrantyMonths())
+                .build();
+    }
+
+    /**
+     * Ranges of one prefix, keyed by {@code fromSerialNumber}. While they are disjoint, a lookup only needs the
+     * floor entry. Legacy data can hold overlapping ranges, then every range starting at or before the serial
+     * number is checked and the lowest id wins, so lookups don't depend on which range was indexed last.
+     */
+    private static final class Node {
+        private static final Comparator<Passport> BY_ID = Comparator.comparing(Passport::getId);
+
+        private final Map<Character, Node> children = new HashMap<>();
+        private final TreeMap<Integer, List<Passport>> ranges = new TreeMap<>();
+        private boolean disjoint = true;
+
+        private Passport find(String serialId, int prefixLength) {
+            if (ranges.isEmpty()) {
+                return null;
+            }
+
+            int serialNumber;
+            try {
+                serialNumber = Integer.parseInt(serialId.substring(prefixLength));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+
+            if (disjoint) {
+                Map.Entry<Integer, List<Passport>> entry = ranges.floorEntry(serialNumber);
+                if (entry != null && serialNumber <= entry.getValue().getFirst().getToSerialNumber()) {
+                    return entry.getValue().getFirst();
+                }
+                return null;
+            }
+
+            Passport match = null;
+            for (List<Passport> passports : ranges.headMap(serialNumber, true).values()) {
+                for (Passport passport : passports) {
+                    if (serialNumber <= passport.getToSerialNumber() && (match == null || BY_ID.compare(passport, match) < 0)) {
+                        match = passport;
+                    }
+                }
+            }
+            return match;
+        }
+
+        private List<Passport> overlapping(int from, int to) {
+            List<Passport> result = new ArrayList<>();
+            for (List<Passport> passports : ranges.headMap(to, true).descendingMap().values()) {
+                Passport passport = passports.getFirst();
+                if (disjoint && passport.getToSerialNumber() < from) {
+                    break;
+                }
+                for (Passport candidate : passports) {
+                    if (candidate.getToSerialNumber() >= from) {
+                        result.add(candidate);
+                    }
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Adds the range and returns whether it overlaps the floor or ceiling range. While the ranges were disjoint
+         * those are the only ones it can overlap, so {@code disjoint} stays exact without walking the prefix.
+         */
+        private boolean add(Passport passport) {
+            int from = passport.getFromSerialNumber();
+            Map.Entry<Integer, List<Passport>> floor = ranges.floorEntry(from);
+            Map.Entry<Integer, List<Passport>> ceiling = ranges.higherEntry(from);
+            boolean overlaps = (floor != null && floor.getValue().stream().anyMatch(p -> p.getToSerialNumber() >= from))
+                    || (ceiling != null && ceiling.getKey() <= passport.getToSerialNumber());
+
+            ranges.computeIfAbsent(from, k -> new ArrayList<>()).add(passport);
+            disjoint &= !overlaps;
+            return overlaps;
+        }
+
+        /**
+         * Removing a range can't create an overlap, so only a node that already had one is rechecked.
+         */
+        private void drop(Passport passport) {
+            List<Passport> atFrom = ranges.get(passport.getFromSerialNumber());
+            if (atFrom == null || !atFrom.remove(passport)) {
+                return;
+            }
+            if (atFrom.isEmpty()) {
+                ranges.remove(passport.getFromSerialNumber());
+            }
+            if (!disjoint) {
+                recheck();
+            }
+        }
+
+        /**
+         * Recomputes whether the ranges are disjoint and returns the overlapping pairs found.
+         * Walks every range of the prefix, so it runs on rebuild, refresh and removals from overlapping prefixes only.
+         */
+        private List<List<Passport>> recheck() {
+            List<List<Passport>> overlaps = new ArrayList<>();
+            Passport widest = null;
+            for (List<Passport> passports : ranges.values()) {
+                for (Passport passport : passports) {
+                    if (widest != null && passport.getFromSerialNumber() <= widest.getToSerialNumber()) {
+                        overlaps.add(List.of(widest, passport));
+                    }
+                    if (widest == null || passport.getToSerialNumber() > widest.getToSerialNumber()) {
+                        widest = passport;
+                    }
+                }
+            }
+            disjoint = overlaps.isEmpty();
+            return overlaps;
+        }
+
+        private void forEach(BiConsumer<String, Node> action) {
+            forEach(new StringBuilder(), action);
+        }
+
+        private void forEach(StringBuilder prefix, BiConsumer<String, Node> action) {
+            action.accept(prefix.toString(), this);
+            children.forEach((c, child) -> {
+                prefix.append(c);
+                child.forEach(prefix, action);
+                prefix.setLength(prefix.length() - 1);
+            });
+        }
+    }
+}
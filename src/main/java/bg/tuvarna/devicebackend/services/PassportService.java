@@ -6,33 +6,76 @@ import bg.tuvarna.devicebackend.models.dtos.PassportCreateVO;
 import bg.tuvarna.devicebackend.models.dtos.PassportUpdateVO;
 import bg.tuvarna.devicebackend.models.entities.Passport;
 import bg.tuvarna.devicebackend.models.mappers.PassportMapper;
+import bg.tuvarna.devicebackend.repositories.DeviceRepository;
 import bg.tuvarna.devicebackend.repositories.PassportRepository;
 import bg.tuvarna.devicebackend.utils.CustomPage;
-import lombok.AllArgsConstructor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
+import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 
 @Service
-@AllArgsConstructor
 public class PassportService {
     private final PassportRepository passportRepository;
+    private final PassportIndex passportIndex;
+    private final DeviceRepository deviceRepository;
+    private final AdminSearchIndex searchIndex;
+    private final PassportWriteLock writeLock;
+    private final Timer resolutionTimer;
+
+    public PassportService(
+            PassportRepository passportRepository,
+            PassportIndex passportIndex,
+            DeviceRepository deviceRepository,
+            AdminSearchIndex searchIndex,
+            PassportWriteLock writeLock,
+            MeterRegistry meterRegistry
+    ) {
+        this.passportRepository = passportRepository;
+        this.passportIndex = passportIndex;
+        this.deviceRepository = deviceRepository;
+        this.searchIndex = searchIndex;
+        this.writeLock = writeLock;
+        this.resolutionTimer = Timer.builder("passport.resolution")
+                .description("Time to resolve the passport of a serial number")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Serializes passport writes on all nodes, so no overlapping range can slip between the overlap check and the insert.
+     */
+    public PassportWriteLock writeLock() {
+        return writeLock;
+    }
 
     public Passport create(PassportCreateVO passportCreateVO) {
-        List<Passport> passports = passportRepository.findByFromSerialNumberBetween(passportCreateVO.serialPrefix(), passportCreateVO.fromSerialNumber(), passportCreateVO.toSerialNumber());
-        if (!passports.isEmpty()) {
-            throw new CustomException("Serial number already exists", ErrorCode.AlreadyExists);
-        }
+        return writeLock.run(() -> createLocked(passportCreateVO));
+    }
+
+    public Passport update(Long id, PassportUpdateVO passportUpdateVO) {
+        Passport saved = writeLock.run(() -> updateLocked(id, passportUpdateVO));
+        searchIndex.putPassport(saved);
+        return saved;
+    }
+
+    private Passport createLocked(PassportCreateVO passportCreateVO) {
+        validateRange(passportCreateVO.fromSerialNumber(), passportCreateVO.toSerialNumber());
+
+        checkFree(passportCreateVO.serialPrefix(), passportCreateVO.fromSerialNumber(), passportCreateVO.toSerialNumber(), null);
 
         Passport passport = PassportMapper.toEntity(passportCreateVO);
 
         return passportRepository.save(passport);
     }
 
-    public Passport update(Long id, PassportUpdateVO passportUpdateVO) {
+    private Passport updateLocked(Long id, PassportUpdateVO passportUpdateVO) {
         Passport passport = findPassportById(id);
 
         if (passport == null) {
@@ -43,14 +86,38 @@ public class PassportService {
         int fromSerialNumber = passportUpdateVO.fromSerialNumber() != null ? passportUpdateVO.fromSerialNumber() : passport.getFromSerialNumber();
         int toSerialNumber = passportUpdateVO.toSerialNumber() != null ? passportUpdateVO.toSerialNumber() : passport.getToSerialNumber();
 
-        List<Passport> passports = passportRepository.findByFromSerialNumberBetween(serialPrefix, fromSerialNumber, toSerialNumber);
-        if (!passports.isEmpty() && passports.stream().anyMatch(p -> !Objects.equals(p.getId(), passport.getId()))) {
+        validateRange(fromSerialNumber, toSerialNumber);
+
+        checkFree(serialPrefix, fromSerialNumber, toSerialNumber, passport.getId());
+
+        PassportMapper.updateEntity(passport, passportUpdateVO);
+
+        Passport saved = passportRepository.save(passport);
+        // The search documents are rebuilt in SQL from the passport row, so the update has to reach it first.
+        passportRepository.flush();
+        deviceRepository.refreshSearchDocumentsOfPassport(saved.getId());
+        return saved;
+    }
+
+    /**
+     * Fails when a passport other than {@code ownId} overlaps the range. The local index only rejects early;
+     * the database is always asked, since the index of this node may not have seen a passport another node just saved.
+     */
+    private void checkFree(String serialPrefix, int fromSerialNumber, int toSerialNumber, Long ownId) {
+        if (overlapsOther(passportIndex.findOverlapping(serialPrefix, fromSerialNumber, toSerialNumber), ownId)
+                || overlapsOther(passportRepository.findOverlapping(serialPrefix, fromSerialNumber, toSerialNumber), ownId)) {
             throw new CustomException("Serial number already exists", ErrorCode.AlreadyExists);
         }
+    }
 
-        PassportMapper.updateEntity(passport, passportUpdateVO);
+    private static boolean overlapsOther(List<Passport> passports, Long ownId) {
+        return passports.stream().anyMatch(p -> !Objects.equals(p.getId(), ownId));
+    }
 
-        return passportRepository.save(passport);
+    private void validateRange(int fromSerialNumber, int toSerialNumber) {
+        if (fromSerialNumber > toSerialNumber) {
+            throw new CustomException("From serial number can't be greater than to serial number", ErrorCode.Validation);
+        }
     }
 
     public Passport findPassportById(Long id) {
@@ -58,21 +125,16 @@ public class PassportService {
     }
 
     public Passport findPassportBySerialId(String serialId) {
-        List<Passport> passports = getPassportsBySerialPrefix(serialId);
-        
-        for (Passport passport : passports) {
-            int serialNumber;
-            try {
-                serialNumber = Integer.parseInt(serialId.split(passport.getSerialPrefix())[1]);
-            } catch (NumberFormatException e) {
-                continue;
-            }
-            if (serialNumber >= passport.getFromSerialNumber() && serialNumber <= passport.getToSerialNumber()) {
-                return passport;
-            }
+        Passport passport = resolutionTimer.record(() -> passportIndex.find(serialId));
+        if (passport == null) {
+            throw new CustomException("Passport not found for serial number: " + serialId, ErrorCode.Failed);
         }
 
-        throw new CustomException("Passport not found for serial number: " + serialId, ErrorCode.Failed);
+        return passport;
+    }
+
+    public Map<String, Passport> findPassportsBySerialIds(Collection<String> serialIds) {
+        return passportIndex.findAll(new LinkedHashSet<>(serialIds));
     }
 
     public CustomPage<Passport> getPassports(int page, int size) {
@@ -0,0 +1,72 @@
+package bg.tuvarna.devicebackend.services;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Serializes passport writes across every instance of the service.
+ * The work runs in a transaction that first takes a PostgreSQL advisory lock, so the overlap check and the
+ * insert of one node can't interleave with those of another. The lock is released when the transaction ends.
+ * Other databases (H2 in tests) only get the in-process lock.
+ */
+@Component
+public class PassportWriteLock {
+    // Any key works as long as every node uses the same one and nothing else takes it.
+    private static final long ADVISORY_LOCK_KEY = 0x7061737370L;
+
+    // A lock instead of synchronized: a virtual thread blocking on JDBC inside a monitor pins its carrier thread.
+    private final Lock localLock = new ReentrantLock();
+    private final TransactionTemplate transactionTemplate;
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean advisory;
+
+    @Autowired
+    public PassportWriteLock(TransactionTemplate transactionTemplate, JdbcTemplate jdbcTemplate) {
+        this(transactionTemplate, jdbcTemplate, isPostgres(jdbcTemplate));
+    }
+
+    private PassportWriteLock(TransactionTemplate transactionTemplate, JdbcTemplate jdbcTemplate, boolean advisory) {
+        this.transactionTemplate = transactionTemplate;
+        this.jdbcTemplate = jdbcTemplate;
+        this.advisory = advisory;
+    }
+
+    /**
+     * A lock that runs the work without a transaction, for tests that mock the repositories.
+     */
+    public static PassportWriteLock local() {
+        return new PassportWriteLock(null, null, false);
+    }
+
+    public <T> T run(Supplier<T> work) {
+        // The local lock keeps writers of one node from each holding a connection while they wait for the advisory lock.
+        localLock.lock();
+        try {
+            if (transactionTemplate == null) {
+                return work.get();
+            }
+
+            return transactionTemplate.execute(status -> {
+                if (advisory) {
+                    jdbcTemplate.execute("SELECT pg_advisory_xact_lock(" + ADVISORY_LOCK_KEY + ")");
+                }
+                return work.get();
+            });
+        } finally {
+            localLock.unlock();
+        }
+    }
+
+    private static boolean isPostgres(JdbcTemplate jdbcTemplate) {
+        return Boolean.TRUE.equals(jdbcTemplate.execute((ConnectionCallback<Boolean>) connection ->
+                "PostgreSQL".equals(connection.getMetaData().getDatabaseProductName())
+        ));
+    }
+}
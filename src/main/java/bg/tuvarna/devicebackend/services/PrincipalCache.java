@@ -0,0 +1,47 @@
+package bg.tuvarna.devicebackend.services;
+
+import bg.tuvarna.devicebackend.models.dtos.PrincipalVO;
+import bg.tuvarna.devicebackend.repositories.UserRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+
+/**
+ * Size-bounded, expiring cache of the id, role, email and token version of authenticated users,
+ * so bearer requests don't load the user with its eagerly fetched devices and renovations.
+ * Entries are evicted whenever the user's profile, password or token version changes on this instance;
+ * other instances see the change once their entry expires.
+ */
+@Service
+public class PrincipalCache {
+    private final UserRepository userRepository;
+    private final Cache<Long, PrincipalVO> cache;
+
+    public PrincipalCache(
+            UserRepository userRepository,
+            @Value("${auth.principal-cache.ttl:PT5M}") Duration ttl,
+            @Value("${auth.principal-cache.max-size:10000}") long maxSize
+    ) {
+        this.userRepository = userRepository;
+        this.cache = Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .maximumSize(maxSize)
+                .build();
+    }
+
+    public PrincipalVO get(Long id) {
+        PrincipalVO principal = cache.get(id, key -> userRepository.findPrincipalById(key).orElse(null));
+        if (principal == null) {
+            throw new UsernameNotFoundException(String.valueOf(id));
+        }
+        return principal;
+    }
+
+    public void evict(Long id) {
+        cache.invalidate(id);
+    }
+}
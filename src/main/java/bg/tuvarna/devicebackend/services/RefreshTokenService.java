@@ -0,0 +1,138 @@
+package bg.tuvarna.devicebackend.services;
+
+import bg.tuvarna.devicebackend.config.JwtService;
+import bg.tuvarna.devicebackend.controllers.exceptions.CustomException;
+import bg.tuvarna.devicebackend.controllers.exceptions.ErrorCode;
+import bg.tuvarna.devicebackend.models.dtos.TokenPairVO;
+import bg.tuvarna.devicebackend.models.entities.RefreshToken;
+import bg.tuvarna.devicebackend.models.entities.User;
+import bg.tuvarna.devicebackend.repositories.RefreshTokenRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.UUID;
+
+/**
+ * Issues short-lived access tokens together with long-lived refresh tokens.
+ * Refresh tokens are random strings stored only as SHA-256 hashes; a refresh costs one indexed lookup
+ * instead of a password check. Every refresh rotates the token. Presenting a token that was already
+ * rotated means it leaked, so its whole family, including the current token, is revoked.
+ */
+@Service
+public class RefreshTokenService {
+    private static final Logger logger = LoggerFactory.getLogger(RefreshTokenService.class);
+    private static final int TOKEN_BYTES = 32;
+
+    private final RefreshTokenRepository refreshTokenRepository;
+    private final JwtService jwtService;
+    private final TokenVersions tokenVersions;
+    private final PrincipalCache principalCache;
+    private final Duration ttl;
+    private final SecureRandom random = new SecureRandom();
+
+    public RefreshTokenService(
+            RefreshTokenRepository refreshTokenRepository,
+            JwtService jwtService,
+            TokenVersions tokenVersions,
+            PrincipalCache principalCache,
+            @Value("${auth.refresh-token.ttl:P30D}") Duration ttl
+    ) {
+        this.refreshTokenRepository = refreshTokenRepository;
+        this.jwtService = jwtService;
+        this.tokenVersions = tokenVersions;
+        this.principalCache = principalCache;
+        this.ttl = ttl;
+    }
+
+    /**
+     * Starts a new token family for a user who just logged in with a password.
+     */
+    public TokenPairVO createSession(User principal) {
+        return new TokenPairVO(accessToken(principal), issue(principal.getId(), UUID.randomUUID().toString()));
+    }
+
+    /**
+     * The reuse path deletes the family and then fails, so the delete must not roll back with it.
+     */
+    @Transactional(noRollbackFor = CustomException.class)
+    public TokenPairVO refresh(String refreshToken) {
+        RefreshToken stored = refreshTokenRepository.findByTokenHash(hash(refreshToken))
+                .orElseThrow(RefreshTokenService::invalidToken);
+
+        Instant now = Instant.now();
+        if (stored.getUsedAt() != null || refreshTokenRepository.markUsed(stored.getId(), now) == 0) {
+            refreshTokenRepository.deleteByFamilyId(stored.getFamilyId());
+            logger.warn("Refresh token reused for user {}, revoked its session", stored.getUserId());
+            throw invalidToken();
+        }
+        if (stored.getExpiresAt().isBefore(now)) {
+            throw invalidToken();
+        }
+
+        User principal;
+        try {
+            principal = principalCache.get(stored.getUserId()).toUser();
+        } catch (UsernameNotFoundException e) {
+            throw invalidToken();
+        }
+
+        return new TokenPairVO(accessToken(principal), issue(principal.getId(), stored.getFamilyId()));
+    }
+
+    /**
+     * Ends every session of the user, e.g. after a password change.
+     */
+    public void revokeAll(Long userId) {
+        refreshTokenRepository.deleteByUserId(userId);
+    }
+
+    @Scheduled(cron = "${auth.refresh-token.cleanup-cron:0 0 3 * * *}")
+    public void deleteExpired() {
+        int deleted = refreshTokenRepository.deleteExpired(Instant.now());
+        logger.info("Deleted {} expired refresh tokens", deleted);
+    }
+
+    private String accessToken(User principal) {
+        return jwtService.generateAccessToken(principal, tokenVersions.current(principal.getId()));
+    }
+
+    private String issue(Long userId, String familyId) {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+
+        refreshTokenRepository.save(RefreshToken.builder()
+                .tokenHash(hash(token))
+                .familyId(familyId)
+                .userId(userId)
+                .expiresAt(Instant.now().plus(ttl))
+                .build());
+        return token;
+    }
+
+    private static String hash(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static CustomException invalidToken() {
+        return new CustomException("Invalid refresh token", ErrorCode.WrongCredentials);
+    }
+}
@@ -0,0 +1,39 @@
+package bg.tuvarna.devicebackend.services;
+
+import bg.tuvarna.devicebackend.models.dtos.PrincipalVO;
+import bg.tuvarna.devicebackend.models.enums.UserRole;
+import bg.tuvarna.devicebackend.repositories.UserRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+/**
+ * Token versions used to revoke access tokens.
+ * Tokens carry the version that was current when they were minted and are rejected once the user's version moves past it.
+ * The version is stored on the user row and read through {@link PrincipalCache}. A revocation evicts the entry on this
+ * instance only, other instances keep accepting the revoked token until their entry expires
+ * ({@code auth.principal-cache.ttl}). With {@code auth.stateless.enabled} versions aren't checked at all and
+ * a revoked token stays valid until it expires ({@code auth.jwt.access-token-ttl}).
+ */
+@Service
+@RequiredArgsConstructor
+public class TokenVersions {
+    private final UserRepository userRepository;
+    private final PrincipalCache principalCache;
+
+    public int current(Long userId) {
+        return principalCache.get(userId).tokenVersion();
+    }
+
+    /**
+     * A token is current while its version has not been revoked and the role it carries, if any, is still the user's,
+     * so a role change ends the user's tokens just like a revocation does.
+     */
+    public boolean isCurrent(PrincipalVO principal, int version, UserRole role) {
+        return version >= principal.tokenVersion() && (role == null || role == principal.role());
+    }
+
+    public void revoke(Long userId) {
+        userRepository.incrementTokenVersion(userId);
+        principalCache.evict(userId);
+    }
+}
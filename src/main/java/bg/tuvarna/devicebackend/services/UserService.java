@@ -9,21 +9,35 @@ import bg.tuvarna.devicebackend.models.dtos.UserUpdateVO;
 import bg.tuvarna.devicebackend.models.entities.User;
 import bg.tuvarna.devicebackend.models.enums.UserRole;
 import bg.tuvarna.devicebackend.repositories.UserRepository;
+import bg.tuvarna.devicebackend.utils.CursorPage;
+import bg.tuvarna.devicebackend.utils.Cursors;
 import bg.tuvarna.devicebackend.utils.CustomPage;
 import lombok.AllArgsConstructor;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
 @AllArgsConstructor
 public class UserService {
+    private static final int MAX_CURSOR_PAGE_SIZE = 100;
+    private static final int MAX_MATCHING_DEVICES = 10;
+
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
     private final DeviceService deviceService;
+    private final AdminSearchIndex searchIndex;
+    private final PrincipalCache principalCache;
+    private final TokenVersions tokenVersions;
+    private final RefreshTokenService refreshTokenService;
 
     public void register(UserCreateVO userCreateVO) {
         if (isEmailTaken(userCreateVO.email())) {
@@ -37,6 +51,7 @@ public class UserService {
 
         user.setPassword(passwordEncoder.encode(userCreateVO.password()));
         user = userRepository.saveAndFlush(user);
+        searchIndex.putUser(user);
 
         if (
                 userCreateVO.deviceSerialNumber() == null || userCreateVO.deviceSerialNumber().isBlank()
@@ -50,6 +65,7 @@ public class UserService {
             deviceService.registerDevice(userCreateVO.deviceSerialNumber(), userCreateVO.purchaseDate(), user);
         } catch (CustomException e) {
             userRepository.delete(user);
+            searchIndex.removeUser(user.getId());
             throw e;
         }
     }
@@ -68,16 +84,27 @@ public class UserService {
         return userRepository.findById(id).orElseThrow(() -> new CustomException("User not found", ErrorCode.EntityNotFound));
     }
 
+    /**
+     * The user with devices and their passports, for the profile view.
+     */
+    public User getUserDetail(Long id) {
+        return userRepository.findDetailById(id).orElseThrow(() -> new CustomException("User not found", ErrorCode.EntityNotFound));
+    }
+
     public User getUserByUsername(String username) {
         return userRepository.findByEmailOrPhone(username).orElseThrow(() -> new CustomException("User not found", ErrorCode.EntityNotFound));
     }
 
     public CustomPage<UserListing> getUsers(String searchBy, int page, int size) {
-        Page<User> userPage;
+        if (searchBy != null && searchIndex.isEnabled()) {
+            return getIndexedUsers(searchBy, page, size);
+        }
+
+        Page<UserListing> userPage;
         if (searchBy == null) {
-            userPage = userRepository.getAllUsers(PageRequest.of(page - 1, size));
+            userPage = userRepository.findListing(PageRequest.of(page - 1, size));
         } else {
-            userPage = userRepository.searchBy(searchBy, PageRequest.of(page - 1, size));
+            userPage = userRepository.searchListing(searchBy, PageRequest.of(page - 1, size));
         }
 
         CustomPage<UserListing> customPage = new CustomPage<>();
@@ -85,24 +112,82 @@ public class UserService {
         customPage.setCurrentPage(userPage.getNumber() + 1);
         customPage.setSize(userPage.getSize());
         customPage.setTotalItems(userPage.getTotalElements());
+        customPage.setItems(withMatchingDevices(userPage.getContent(), searchBy));
 
-        customPage.setItems(userPage
-                .stream()
-                .peek(user -> {
-                            if (searchBy != null) {
-                                user.setDevices(user.getDevices().stream().filter(
-                                        device -> device.getSerialNumber().contains(searchBy)
-                                ).collect(Collectors.toList()));
-                            }
-                        }
-                )
-                .map(UserListing::new)
-                .toList()
-        );
+        return customPage;
+    }
+
+    /**
+     * Resolves the matching user ids in memory and loads only the requested page from the database.
+     */
+    private CustomPage<UserListing> getIndexedUsers(String searchBy, int page, int size) {
+        List<Long> matches = searchIndex.searchUsers(searchBy);
+        int from = Math.min(Math.max(page - 1, 0) * size, matches.size());
+        List<Long> pageIds = matches.subList(from, Math.min(from + size, matches.size()));
+
+        Map<Long, UserListing> users = userRepository.findListingByIdIn(pageIds).stream()
+                .collect(Collectors.toMap(UserListing::id, Function.identity()));
+
+        CustomPage<UserListing> customPage = new CustomPage<>();
+        customPage.setTotalPages((matches.size() + size - 1) / size);
+        customPage.setCurrentPage(page);
+        customPage.setSize(size);
+        customPage.setTotalItems(matches.size());
+        customPage.setItems(withMatchingDevices(
+                pageIds.stream().map(users::get).filter(Objects::nonNull).toList(),
+                searchBy
+        ));
 
         return customPage;
     }
 
+    /**
+     * Seeks through users ordered by id. Without a search term this is a plain range scan on the primary key,
+     * and the total is only counted when {@code withTotal} is set.
+     */
+    public CursorPage<UserListing> getUsersAfter(String searchBy, String cursor, int size, boolean withTotal) {
+        if (size < 1 || size > MAX_CURSOR_PAGE_SIZE) {
+            throw new CustomException("Page size must be between 1 and " + MAX_CURSOR_PAGE_SIZE, ErrorCode.Validation);
+        }
+
+        Long after = Cursors.decodeLong(cursor);
+        List<UserListing> users = searchBy == null
+                ? userRepository.findListingPageAfter(after, Limit.of(size + 1))
+                : userRepository.searchListingPageAfter(searchBy, after, Limit.of(size + 1));
+
+        CursorPage<UserListing> cursorPage = new CursorPage<>();
+        cursorPage.setSize(size);
+        if (users.size() > size) {
+            users = users.subList(0, size);
+            cursorPage.setNextCursor(Cursors.encode(users.get(size - 1).id()));
+        }
+        cursorPage.setItems(withMatchingDevices(users, searchBy));
+
+        if (withTotal) {
+            cursorPage.setTotalItems(searchBy == null ? userRepository.countListed() : userRepository.countBySearch(searchBy));
+        }
+
+        return cursorPage;
+    }
+
+    /**
+     * Adds the serial numbers matching the search, selected for the whole page in one query.
+     */
+    private List<UserListing> withMatchingDevices(List<UserListing> users, String searchBy) {
+        if (searchBy == null || users.isEmpty()) {
+            return users;
+        }
+
+        Map<Long, List<String>> matches = deviceService.findMatchingSerialNumbers(
+                users.stream().map(UserListing::id).toList(),
+                searchBy,
+                MAX_MATCHING_DEVICES
+        );
+        return users.stream()
+                .map(user -> user.withMatchingDevices(matches.getOrDefault(user.id(), List.of())))
+                .toList();
+    }
+
     public User updateUser(Long id, UserUpdateVO userUpdateVO) {
         User user = getUserById(id);
 
@@ -123,7 +208,11 @@ public class UserService {
         user.setPhone(userUpdateVO.phone());
         user.setEmail(userUpdateVO.email());
 
-        return userRepository.save(user);
+        User saved = userRepository.save(user);
+        deviceService.refreshSearchDocumentsOfUser(saved.getId());
+        searchIndex.putUser(saved);
+        principalCache.evict(saved.getId());
+        return saved;
     }
 
     public void updatePassword(Long id, ChangePasswordVO passwordVO) {
@@ -134,6 +223,9 @@ public class UserService {
         if (passwordEncoder.matches(passwordVO.oldPassword(), user.getPassword())) {
             user.setPassword(passwordEncoder.encode(passwordVO.newPassword()));
             userRepository.save(user);
+            principalCache.evict(id);
+            tokenVersions.revoke(id);
+            refreshTokenService.revokeAll(id);
         } else {
             throw new CustomException("Old password didn't match", ErrorCode.Validation);
         }
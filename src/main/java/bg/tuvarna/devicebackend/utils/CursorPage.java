@@ -0,0 +1,21 @@
+package bg.tuvarna.devicebackend.utils;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * Page of a keyset (seek) listing.
+ * {@code nextCursor} is null on the last page and {@code totalItems} is only filled when the count was requested.
+ */
+@NoArgsConstructor
+@Setter
+@Getter
+public class CursorPage<T> {
+    private int size;
+    private String nextCursor;
+    private Long totalItems;
+    private List<T> items;
+}
@@ -0,0 +1,48 @@
+package bg.tuvarna.devicebackend.utils;
+
+import bg.tuvarna.devicebackend.controllers.exceptions.CustomException;
+import bg.tuvarna.devicebackend.controllers.exceptions.ErrorCode;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Encodes the last sort key of a page into an opaque, URL safe cursor and back.
+ */
+public final class Cursors {
+    private Cursors() {
+    }
+
+    public static String encode(String key) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static String encode(Long key) {
+        return encode(String.valueOf(key));
+    }
+
+    public static String decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+
+        try {
+            return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new CustomException("Invalid cursor", ErrorCode.Validation);
+        }
+    }
+
+    public static Long decodeLong(String cursor) {
+        String key = decode(cursor);
+        if (key == null) {
+            return null;
+        }
+
+        try {
+            return Long.parseLong(key);
+        } catch (NumberFormatException e) {
+            throw new CustomException("Invalid cursor", ErrorCode.Validation);
+        }
+    }
+}
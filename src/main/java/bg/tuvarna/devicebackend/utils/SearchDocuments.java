@@ -0,0 +1,24 @@
+package bg.tuvarna.devicebackend.utils;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+/**
+ * Builds the lower-cased search documents stored on devices and users.
+ * Fields are separated by a line break so a search term never matches across two fields.
+ * The layout must stay in line with the SQL refresh statements in the repositories.
+ */
+public final class SearchDocuments {
+    public static final String SEPARATOR = "\n";
+
+    private SearchDocuments() {
+    }
+
+    public static String of(String... fields) {
+        return Arrays.stream(fields)
+                .map(field -> field == null ? "" : field)
+                .collect(Collectors.joining(SEPARATOR))
+                .toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,44 @@
+package bg.tuvarna.devicebackend.utils;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket holding {@code capacity} tokens that refill evenly over {@code refillPeriod}.
+ * The whole state is one timestamp, the time at which the bucket would be full again
+ * (the generic cell rate algorithm), updated with compare-and-set.
+ * Times are {@link System#nanoTime()} values and are only ever compared by difference.
+ */
+public final class TokenBucket {
+    private final long interval;
+    private final long tolerance;
+    private final AtomicLong fullAt;
+
+    public TokenBucket(long capacity, Duration refillPeriod, long now) {
+        if (capacity < 1 || refillPeriod.isZero() || refillPeriod.isNegative()) {
+            throw new IllegalArgumentException("A token bucket needs a positive capacity and refill period");
+        }
+
+        this.interval = Math.max(1, refillPeriod.toNanos() / capacity);
+        this.tolerance = interval * (capacity - 1);
+        this.fullAt = new AtomicLong(now);
+    }
+
+    /**
+     * Takes a token if one is available.
+     * @return 0 when the token was taken, otherwise the nanoseconds until the next token is available
+     */
+    public long tryConsume(long now) {
+        while (true) {
+            long current = fullAt.get();
+            long start = current - now < 0 ? now : current;
+            long wait = start - now - tolerance;
+            if (wait > 0) {
+                return wait;
+            }
+            if (fullAt.compareAndSet(current, start + interval)) {
+                return 0;
+            }
+        }
+    }
+}
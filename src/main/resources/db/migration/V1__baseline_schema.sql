@@ -0,0 +1,42 @@
+-- Schema as created by Hibernate before migrations were introduced.
+-- Existing databases already have these tables, so every statement is a no-op there.
+
+CREATE TABLE IF NOT EXISTS users
+(
+    id        bigint NOT NULL PRIMARY KEY,
+    address   varchar(255),
+    email     varchar(255),
+    full_name varchar(255),
+    password  varchar(255),
+    phone     varchar(255),
+    role      varchar(255) CHECK (role IN ('ADMIN', 'USER'))
+);
+
+CREATE TABLE IF NOT EXISTS passports
+(
+    id                 bigint  NOT NULL PRIMARY KEY,
+    from_serial_number integer NOT NULL,
+    model              varchar(255),
+    name               varchar(255),
+    serial_prefix      varchar(255),
+    to_serial_number   integer NOT NULL,
+    warranty_months    integer NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS devices
+(
+    serial_number            varchar(255) NOT NULL PRIMARY KEY,
+    comment                  varchar(255),
+    purchase_date            date,
+    warranty_expiration_date date,
+    passport_id              bigint REFERENCES passports (id),
+    user_id                  bigint REFERENCES users (id)
+);
+
+CREATE TABLE IF NOT EXISTS renovations
+(
+    id                   bigint NOT NULL PRIMARY KEY,
+    description          varchar(255),
+    renovation_date      date,
+    device_serial_number varchar(255) REFERENCES devices (serial_number)
+);
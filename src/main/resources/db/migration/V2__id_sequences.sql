@@ -0,0 +1,10 @@
+-- Ids moved from identity columns to pooled sequences (allocationSize = 50, pooled-lo optimizer).
+-- Each sequence starts right after the highest id already in use, so existing rows keep their ids.
+
+CREATE SEQUENCE IF NOT EXISTS users_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS passports_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS renovations_seq START WITH 1 INCREMENT BY 50;
+
+SELECT setval('users_seq', (SELECT COALESCE(MAX(id), 0) + 1 FROM users), false);
+SELECT setval('passports_seq', (SELECT COALESCE(MAX(id), 0) + 1 FROM passports), false);
+SELECT setval('renovations_seq', (SELECT COALESCE(MAX(id), 0) + 1 FROM renovations), false);
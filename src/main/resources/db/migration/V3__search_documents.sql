@@ -0,0 +1,34 @@
+-- Denormalized, lower-cased search documents for the admin device and user search.
+-- Fields are separated by a line break, matching bg.tuvarna.devicebackend.utils.SearchDocuments.
+-- Trigram GIN indexes let LIKE '%term%' use an index instead of scanning devices, users and passports.
+
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+ALTER TABLE devices ADD COLUMN IF NOT EXISTS search_document text;
+ALTER TABLE users ADD COLUMN IF NOT EXISTS search_document text;
+
+UPDATE users
+SET search_document = lower(
+        coalesce(full_name, '') || chr(10) ||
+        coalesce(address, '') || chr(10) ||
+        coalesce(email, '') || chr(10) ||
+        coalesce(phone, ''));
+
+UPDATE devices d
+SET search_document = lower(
+        coalesce(d.serial_number, '') || chr(10) ||
+        coalesce(p.name, '') || chr(10) ||
+        coalesce(p.model, '') || chr(10) ||
+        coalesce(u.full_name, '') || chr(10) ||
+        coalesce(u.address, '') || chr(10) ||
+        coalesce(u.email, '') || chr(10) ||
+        coalesce(u.phone, ''))
+FROM devices src
+         LEFT JOIN passports p ON p.id = src.passport_id
+         LEFT JOIN users u ON u.id = src.user_id
+WHERE src.serial_number = d.serial_number;
+
+CREATE INDEX IF NOT EXISTS devices_search_document_trgm_idx ON devices USING gin (search_document gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS users_search_document_trgm_idx ON users USING gin (search_document gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS devices_user_id_idx ON devices (user_id);
+CREATE INDEX IF NOT EXISTS devices_passport_id_idx ON devices (passport_id);
@@ -0,0 +1,17 @@
+-- Refresh tokens are stored as SHA-256 hashes. Tokens rotated from one login share a family,
+-- which is revoked as a whole when an already used token is presented again.
+
+CREATE SEQUENCE IF NOT EXISTS refresh_tokens_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE IF NOT EXISTS refresh_tokens
+(
+    id         bigint                      NOT NULL PRIMARY KEY,
+    token_hash varchar(64)                 NOT NULL UNIQUE,
+    family_id  varchar(36)                 NOT NULL,
+    user_id    bigint                      NOT NULL REFERENCES users (id) ON DELETE CASCADE,
+    expires_at timestamp(6) with time zone NOT NULL,
+    used_at    timestamp(6) with time zone
+);
+
+CREATE INDEX IF NOT EXISTS refresh_tokens_family_id_idx ON refresh_tokens (family_id);
+CREATE INDEX IF NOT EXISTS refresh_tokens_user_id_idx ON refresh_tokens (user_id);
@@ -0,0 +1,4 @@
+-- Serves the overlap check that passport writes run under the advisory lock. Overlaps are not a constraint,
+-- since an exclusion constraint would reject databases that still hold overlapping legacy passports.
+
+CREATE INDEX IF NOT EXISTS passports_serial_prefix_from_idx ON passports (serial_prefix, from_serial_number);
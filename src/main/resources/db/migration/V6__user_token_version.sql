@@ -0,0 +1,4 @@
+-- Version of the user's access tokens. Tokens minted with an older version are rejected on every instance,
+-- which picks up the change once its principal cache entry expires or is evicted.
+
+ALTER TABLE users ADD COLUMN IF NOT EXISTS token_version integer NOT NULL DEFAULT 0;
@@ -0,0 +1,77 @@
+package bg.tuvarna.devicebackend.api;
+
+import bg.tuvarna.devicebackend.models.entities.User;
+import bg.tuvarna.devicebackend.models.enums.UserRole;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.httpBasic;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureObservability
+@ActiveProfiles("test")
+class ActuatorSecurityTests {
+    @Autowired
+    private MockMvc mvc;
+
+    @Test
+    void health_isPublic() throws Exception {
+        mvc.perform(get("/actuator/health"))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void prometheus_withoutAuth_returnsUnauthorized() throws Exception {
+        mvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    void prometheus_forUser_isForbidden() throws Exception {
+        User user = User.builder().id(1L).email("user@abv.bg").role(UserRole.USER).build();
+
+        mvc.perform(get("/actuator/prometheus").with(user(user)))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    void prometheus_forAdmin_exposesHistograms() throws Exception {
+        User admin = User.builder().id(1L).email("admin@abv.bg").role(UserRole.ADMIN).build();
+        mvc.perform(get("/actuator/health"));
+
+        mvc.perform(get("/actuator/prometheus").with(user(admin)))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("http_server_requests_seconds_bucket")))
+                .andExpect(content().string(containsString("hikaricp_connections")));
+    }
+
+    @Test
+    void prometheus_withScrapeCredentials_returnsMetrics() throws Exception {
+        mvc.perform(get("/actuator/prometheus").with(httpBasic("prometheus", "scrape-secret")))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("jvm_memory_used_bytes")));
+    }
+
+    @Test
+    void prometheus_withWrongScrapePassword_returnsUnauthorized() throws Exception {
+        mvc.perform(get("/actuator/prometheus").with(httpBasic("prometheus", "wrong")))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    void scrapeCredentials_onlyOpenPrometheus() throws Exception {
+        mvc.perform(get("/actuator/metrics").with(httpBasic("prometheus", "scrape-secret")))
+                .andExpect(status().isUnauthorized());
+    }
+}
@@ -0,0 +1,173 @@
+package bg.tuvarna.devicebackend.api;
+
+import bg.tuvarna.devicebackend.config.SqlMetricsFilter;
+import bg.tuvarna.devicebackend.models.entities.Device;
+import bg.tuvarna.devicebackend.models.entities.Passport;
+import bg.tuvarna.devicebackend.models.entities.Renovation;
+import bg.tuvarna.devicebackend.models.entities.User;
+import bg.tuvarna.devicebackend.models.enums.UserRole;
+import bg.tuvarna.devicebackend.repositories.DeviceRepository;
+import bg.tuvarna.devicebackend.repositories.PassportRepository;
+import bg.tuvarna.devicebackend.repositories.RenovationRepository;
+import bg.tuvarna.devicebackend.repositories.UserRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.RequestBuilder;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Guards the fetch plans: the number of SQL statements per endpoint must not grow with the number of rows.
+ * Every user owns several devices with several renovations, so an N+1 pattern exceeds the budget.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class SqlStatementCountTests {
+    private static final int USERS = 3;
+    private static final int DEVICES_PER_USER = 3;
+    private static final int RENOVATIONS_PER_DEVICE = 2;
+
+    @Autowired
+    private MockMvc mvc;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private JdbcTemplate jdbc;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private PassportRepository passportRepository;
+    @Autowired
+    private DeviceRepository deviceRepository;
+    @Autowired
+    private RenovationRepository renovationRepository;
+
+    private Statistics statistics;
+    private User owner;
+    private User admin;
+
+    @BeforeEach
+    void setUp() {
+        cleanDb();
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        Passport passport = passportRepository.save(Passport.builder()
+                .name("Boiler")
+                .model("B-1")
+                .serialPrefix("SQL")
+                .fromSerialNumber(1)
+                .toSerialNumber(1000)
+                .warrantyMonths(12)
+                .build());
+
+        for (int u = 0; u < USERS; u++) {
+            User user = userRepository.save(User.builder()
+                    .fullName("Owner " + u)
+                    .email("owner" + u + "@abv.bg")
+                    .phone("08880000" + u)
+                    .role(UserRole.USER)
+                    .build());
+            if (owner == null) {
+                owner = user;
+            }
+
+            for (int d = 0; d < DEVICES_PER_USER; d++) {
+                Device device = new Device();
+                device.setSerialNumber("SQL" + (u * 10 + d + 1));
+                device.setPurchaseDate(LocalDate.now());
+                device.setWarrantyExpirationDate(LocalDate.now().plusYears(1));
+                device.setPassport(passport);
+                device.setUser(user);
+                deviceRepository.save(device);
+
+                for (int r = 0; r < RENOVATIONS_PER_DEVICE; r++) {
+                    Renovation renovation = new Renovation();
+                    renovation.setDevice(device);
+                    renovation.setDescription("Service " + r);
+                    renovation.setRenovationDate(LocalDate.now());
+                    renovationRepository.save(renovation);
+                }
+            }
+        }
+
+        admin = User.builder().id(owner.getId()).email(owner.getEmail()).role(UserRole.ADMIN).build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        cleanDb();
+    }
+
+    private void cleanDb() {
+        jdbc.execute("DELETE FROM renovations");
+        jdbc.execute("DELETE FROM devices");
+        jdbc.execute("DELETE FROM passports");
+        jdbc.execute("DELETE FROM users");
+    }
+
+    private void assertStatementsAtMost(long budget, RequestBuilder request) throws Exception {
+        statistics.setStatisticsEnabled(true);
+        statistics.clear();
+
+        mvc.perform(request).andExpect(status().isOk());
+
+        long statements = statistics.getPrepareStatementCount();
+        assertTrue(statements <= budget, "Expected at most " + budget + " SQL statements, got " + statements);
+    }
+
+    @Test
+    void deviceDetail_singleStatement() throws Exception {
+        assertStatementsAtMost(1, get("/api/v1/devices/SQL1").with(user(admin)));
+    }
+
+    @Test
+    void deviceListing_doesNotLoadPerDevice() throws Exception {
+        // Projection with the passport joined and renovations counted, then the count.
+        assertStatementsAtMost(2, get("/api/v1/devices?page=1&size=10").with(user(admin)));
+    }
+
+    @Test
+    void userListing_doesNotLoadPerUser() throws Exception {
+        // Projection with the devices counted, then the count.
+        assertStatementsAtMost(2, get("/api/v1/users?page=1&size=10").with(user(admin)));
+    }
+
+    @Test
+    void responseHeader_reportsStatementCount() throws Exception {
+        statistics.setStatisticsEnabled(true);
+        statistics.clear();
+
+        String count = mvc.perform(get("/api/v1/devices?page=1&size=10").with(user(admin)))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(SqlMetricsFilter.TIME_HEADER))
+                .andReturn()
+                .getResponse()
+                .getHeader(SqlMetricsFilter.COUNT_HEADER);
+
+        assertEquals(String.valueOf(statistics.getPrepareStatementCount()), count);
+    }
+
+    @Test
+    void profile_loadsDevicesWithPassportsTogether() throws Exception {
+        // User with devices and passports, then the renovations of all devices in one batch.
+        assertStatementsAtMost(2, get("/api/v1/users/getUser").with(user(admin)));
+    }
+}
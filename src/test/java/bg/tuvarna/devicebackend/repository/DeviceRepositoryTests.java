@@ -1,15 +1,20 @@
 package bg.tuvarna.devicebackend.repository;
 
+import bg.tuvarna.devicebackend.models.dtos.SerialNumberMatch;
 import bg.tuvarna.devicebackend.models.entities.Device;
 import bg.tuvarna.devicebackend.models.entities.Passport;
+import bg.tuvarna.devicebackend.models.entities.User;
+import bg.tuvarna.devicebackend.models.enums.UserRole;
 import bg.tuvarna.devicebackend.repositories.DeviceRepository;
 import bg.tuvarna.devicebackend.repositories.PassportRepository;
+import bg.tuvarna.devicebackend.repositories.UserRepository;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.ActiveProfiles;
 
 import java.time.LocalDate;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -21,6 +26,8 @@ class DeviceRepositoryTests {
     DeviceRepository deviceRepository;
     @Autowired
     PassportRepository passportRepository;
+    @Autowired
+    UserRepository userRepository;
 
     @Test
     void deleteBySerialNumber_works() {
@@ -42,4 +49,27 @@ class DeviceRepositoryTests {
 
         assertFalse(deviceRepository.existsById("DEL1"));
     }
+
+    @Test
+    void findMatchingSerialNumbers_limitsMatchesPerUser() {
+        User user = userRepository.save(User.builder().fullName("Match").email("match@abv.bg").phone("0888999000").role(UserRole.USER).build());
+        for (String serialNumber : List.of("MAT2", "MAT1", "OTH1")) {
+            Device d = new Device();
+            d.setSerialNumber(serialNumber);
+            d.setUser(user);
+            deviceRepository.save(d);
+        }
+
+        try {
+            List<SerialNumberMatch> all = deviceRepository.findMatchingSerialNumbers(List.of(user.getId()), "mat", 5);
+            List<SerialNumberMatch> first = deviceRepository.findMatchingSerialNumbers(List.of(user.getId()), "mat", 1);
+
+            assertEquals(List.of("MAT1", "MAT2"), all.stream().map(SerialNumberMatch::getSerialNumber).toList());
+            assertEquals(user.getId(), all.getFirst().getUserId());
+            assertEquals(List.of("MAT1"), first.stream().map(SerialNumberMatch::getSerialNumber).toList());
+        } finally {
+            List.of("MAT2", "MAT1", "OTH1").forEach(deviceRepository::deleteBySerialNumber);
+            userRepository.deleteById(user.getId());
+        }
+    }
 }
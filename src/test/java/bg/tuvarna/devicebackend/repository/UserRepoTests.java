@@ -2,14 +2,18 @@ package bg.tuvarna.devicebackend.repository;
 
 import bg.tuvarna.devicebackend.controllers.exceptions.CustomException;
 import bg.tuvarna.devicebackend.models.dtos.UserCreateVO;
+import bg.tuvarna.devicebackend.models.dtos.UserListing;
+import bg.tuvarna.devicebackend.models.entities.Device;
 import bg.tuvarna.devicebackend.models.entities.User;
 import bg.tuvarna.devicebackend.models.enums.UserRole;
+import bg.tuvarna.devicebackend.repositories.DeviceRepository;
 import bg.tuvarna.devicebackend.repositories.UserRepository;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Pageable;
 import org.springframework.test.context.ActiveProfiles;
 
@@ -28,6 +32,8 @@ import static org.mockito.Mockito.*;
 class UserRepoTests {
     @Autowired
     private UserRepository userRepository;
+    @Autowired
+    private DeviceRepository deviceRepository;
 
     @BeforeEach
     void setUp() {
@@ -147,5 +153,44 @@ class UserRepoTests {
         assertEquals("gosho", user.getFullName());
     }
 
+    @Test
+    void findPageAfterSeeksByIdAndSkipsAdmins() {
+        User second = userRepository.save(User.builder().fullName("pesho").email("pesho@abv.bg").phone("0888000001").role(UserRole.USER).build());
+        userRepository.save(User.builder().fullName("admin").email("admin@abv.bg").phone("0888000002").role(UserRole.ADMIN).build());
+        User first = userRepository.getByEmail("gosho@abv.bg");
+
+        List<UserListing> firstPage = userRepository.findListingPageAfter(null, Limit.of(1));
+        List<UserListing> secondPage = userRepository.findListingPageAfter(first.getId(), Limit.of(5));
+
+        assertEquals(List.of(first.getId()), firstPage.stream().map(UserListing::id).toList());
+        assertEquals(List.of(second.getId()), secondPage.stream().map(UserListing::id).toList());
+        assertEquals(2, userRepository.countListed());
+    }
+
+    @Test
+    void searchPageAfterFiltersBySearchTerm() {
+        userRepository.save(User.builder().fullName("pesho").email("pesho@abv.bg").phone("0888000001").role(UserRole.USER).build());
+
+        List<UserListing> users = userRepository.searchListingPageAfter("pesh", null, Limit.of(5));
+
+        assertEquals(1, users.size());
+        assertEquals("pesho", users.getFirst().fullName());
+        assertEquals(1, userRepository.countBySearch("pesh"));
+    }
+
+    @Test
+    void findListingCountsDevices() {
+        User user = userRepository.getByEmail("gosho@abv.bg");
+        for (String serialNumber : List.of("LST1", "LST2")) {
+            Device device = new Device();
+            device.setSerialNumber(serialNumber);
+            device.setUser(user);
+            deviceRepository.save(device);
+        }
 
-}
\ No newline at end of file
+        UserListing listing = userRepository.findListing(Pageable.ofSize(10)).getContent().getFirst();
+
+        assertEquals("gosho", listing.fullName());
+        assertEquals(2L, listing.deviceCount());
+    }
+}
@@ -0,0 +1,127 @@
+package bg.tuvarna.devicebackend.service;
+
+import bg.tuvarna.devicebackend.models.entities.Passport;
+import bg.tuvarna.devicebackend.models.entities.User;
+import bg.tuvarna.devicebackend.models.enums.UserRole;
+import bg.tuvarna.devicebackend.services.AdminSearchIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+class AdminSearchIndexTests {
+    private JdbcTemplate jdbcTemplate;
+    private AdminSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        index = new AdminSearchIndex(jdbcTemplate, true);
+    }
+
+    private Passport passport(long id, String name, String model) {
+        return Passport.builder().id(id).name(name).model(model).serialPrefix("AA").build();
+    }
+
+    private User user(long id, String fullName, String email, UserRole role) {
+        return User.builder().id(id).fullName(fullName).email(email).phone("0888" + id).role(role).build();
+    }
+
+    @Test
+    void searchDevices_matchesSerialPassportAndOwner() {
+        User owner = user(1, "Ivan Petrov", "ivan@abv.bg", UserRole.USER);
+        index.putDevice("AA10", passport(1, "Boiler", "B-200"), owner);
+        index.putDevice("AA2", passport(1, "Boiler", "B-200"), null);
+
+        assertEquals(List.of("AA10", "AA2"), index.searchDevices("boil"));
+        assertEquals(List.of("AA10"), index.searchDevices("PETROV"));
+        assertEquals(List.of("AA2"), index.searchDevices("aa2"));
+        assertEquals(List.of("AA10", "AA2"), index.searchDevices("a"));
+        assertTrue(index.searchDevices("missing").isEmpty());
+    }
+
+    @Test
+    void searchDevices_doesNotMatchAcrossFields() {
+        index.putDevice("AA10", passport(1, "Boiler", "B-200"), null);
+
+        assertTrue(index.searchDevices("aa10boiler").isEmpty());
+    }
+
+    @Test
+    void putUserAndPassport_reindexDevices() {
+        User owner = user(1, "Ivan Petrov", "ivan@abv.bg", UserRole.USER);
+        Passport passport = passport(1, "Boiler", "B-200");
+        index.putDevice("AA10", passport, owner);
+
+        owner.setFullName("Georgi Ivanov");
+        index.putUser(owner);
+        passport.setName("Heater");
+        index.putPassport(passport);
+
+        assertTrue(index.searchDevices("petrov").isEmpty());
+        assertTrue(index.searchDevices("boiler").isEmpty());
+        assertEquals(List.of("AA10"), index.searchDevices("georgi"));
+        assertEquals(List.of("AA10"), index.searchDevices("heater"));
+    }
+
+    @Test
+    void searchUsers_matchesOwnFieldsAndDevicesButSkipsAdmins() {
+        User ivan = user(1, "Ivan", "ivan@abv.bg", UserRole.USER);
+        User admin = user(2, "Ivan Admin", "admin@abv.bg", UserRole.ADMIN);
+        index.putUser(ivan);
+        index.putUser(admin);
+        index.putDevice("AA10", passport(1, "Boiler", "B-200"), ivan);
+
+        assertEquals(List.of(1L), index.searchUsers("ivan"));
+        assertEquals(List.of(1L), index.searchUsers("b-200"));
+        assertTrue(index.searchUsers("admin").isEmpty());
+    }
+
+    @Test
+    void removeDevice_dropsItFromSearch() {
+        index.putDevice("AA10", passport(1, "Boiler", "B-200"), null);
+
+        index.removeDevice("AA10");
+
+        assertTrue(index.searchDevices("boiler").isEmpty());
+    }
+
+    @Test
+    void disabledIndex_ignoresWrites() {
+        AdminSearchIndex disabled = new AdminSearchIndex(mock(JdbcTemplate.class), false);
+
+        disabled.putDevice("AA10", passport(1, "Boiler", "B-200"), null);
+
+        assertFalse(disabled.isEnabled());
+        assertTrue(disabled.searchDevices("boiler").isEmpty());
+    }
+
+    @Test
+    void refresh_dropsDevicesRemovedByOtherInstances() {
+        index.putDevice("AA10", passport(1, "Boiler", "B-200"), null);
+
+        index.refresh();
+
+        assertTrue(index.searchDevices("boiler").isEmpty());
+    }
+
+    @Test
+    void refresh_whenIndexChangesDuringLoad_keepsNewerEntries() {
+        doAnswer(inv -> {
+            index.putDevice("AA10", passport(1, "Boiler", "B-200"), null);
+            return null;
+        }).when(jdbcTemplate).query(startsWith("select serial_number"), any(RowCallbackHandler.class));
+
+        index.refresh();
+
+        assertEquals(List.of("AA10"), index.searchDevices("boiler"));
+    }
+}
@@ -0,0 +1,152 @@
+package bg.tuvarna.devicebackend.service;
+
+import bg.tuvarna.devicebackend.controllers.exceptions.CustomException;
+import bg.tuvarna.devicebackend.models.dtos.DeviceImportResultVO;
+import bg.tuvarna.devicebackend.models.entities.Device;
+import bg.tuvarna.devicebackend.models.entities.Passport;
+import bg.tuvarna.devicebackend.repositories.DeviceRepository;
+import bg.tuvarna.devicebackend.repositories.PassportRepository;
+import bg.tuvarna.devicebackend.services.DeviceImportService;
+import bg.tuvarna.devicebackend.services.PassportIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class DeviceImportServiceTests {
+
+    @Autowired private DeviceImportService importService;
+    @Autowired private DeviceRepository deviceRepository;
+    @Autowired private PassportRepository passportRepository;
+    @Autowired private PassportIndex passportIndex;
+    @Autowired private JdbcTemplate jdbc;
+
+    @BeforeEach
+    void cleanDb() {
+        jdbc.execute("DELETE FROM renovations");
+        jdbc.execute("DELETE FROM devices");
+        jdbc.execute("DELETE FROM passports");
+        passportIndex.rebuild();
+    }
+
+    private Passport passport(String prefix, int months) {
+        Passport p = new Passport();
+        p.setSerialPrefix(prefix);
+        p.setFromSerialNumber(1);
+        p.setToSerialNumber(9999);
+        p.setWarrantyMonths(months);
+        return passportRepository.saveAndFlush(p);
+    }
+
+    private List<DeviceImportResultVO> register(String json) throws Exception {
+        InputStream body = new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+        List<DeviceImportResultVO> results = new ArrayList<>();
+        importService.registerDevices(body, results::addAll);
+        return results;
+    }
+
+    @Test
+    void registerDevices_insertsValidDevicesWithWarranty() throws Exception {
+        passport("BLK", 24);
+
+        List<DeviceImportResultVO> results = register("""
+                [
+                  {"deviceSerialNumber": "BLK1", "purchaseDate": "2024-01-01"},
+                  {"deviceSerialNumber": "BLK2", "purchaseDate": "2024-02-01"}
+                ]
+                """);
+
+        assertEquals(2, results.size());
+        assertTrue(results.stream().allMatch(r -> r.error() == null));
+
+        Device device = deviceRepository.findById("BLK1").orElseThrow();
+        assertEquals(LocalDate.of(2026, 1, 1), device.getWarrantyExpirationDate());
+        assertNull(device.getUser());
+        assertNotNull(device.getPassport());
+    }
+
+    @Test
+    void registerDevices_reportsDuplicatesUnknownAndInvalidEntries() throws Exception {
+        Passport p = passport("DUP", 12);
+
+        Device existing = new Device();
+        existing.setSerialNumber("DUP1");
+        existing.setPassport(p);
+        existing.setPurchaseDate(LocalDate.of(2024, 1, 1));
+        existing.setWarrantyExpirationDate(LocalDate.of(2025, 1, 1));
+        deviceRepository.saveAndFlush(existing);
+
+        List<DeviceImportResultVO> results = register("""
+                [
+                  {"deviceSerialNumber": "DUP1", "purchaseDate": "2024-01-01"},
+                  {"deviceSerialNumber": "DUP2", "purchaseDate": "2024-01-01"},
+                  {"deviceSerialNumber": "DUP2", "purchaseDate": "2024-01-01"},
+                  {"deviceSerialNumber": "NOPE1", "purchaseDate": "2024-01-01"},
+                  {"deviceSerialNumber": "DUP3"}
+                ]
+                """);
+
+        assertEquals(5, results.size());
+        assertEquals(1, results.stream().filter(r -> r.error() == null).count());
+        assertEquals(2, deviceRepository.count());
+    }
+
+    @Test
+    void registerDevices_whenOneRowFailsTheBatch_registersTheOthers() throws Exception {
+        passport("OK", 12);
+        Passport gone = passport("GONE", 12);
+        // Deleted behind the index's back, so the row passes every check and only fails on the foreign key.
+        jdbc.update("DELETE FROM passports WHERE id = ?", gone.getId());
+
+        List<DeviceImportResultVO> results = register("""
+                [
+                  {"deviceSerialNumber": "OK1", "purchaseDate": "2024-01-01"},
+                  {"deviceSerialNumber": "GONE1", "purchaseDate": "2024-01-01"},
+                  {"deviceSerialNumber": "OK2", "purchaseDate": "2024-01-01"}
+                ]
+                """);
+
+        assertEquals(3, results.size());
+        assertNull(results.get(0).error());
+        assertNotNull(results.get(1).error());
+        assertNull(results.get(2).error());
+        assertEquals(2, deviceRepository.count());
+    }
+
+    @Test
+    void registerDevices_unmappableEntries_failOnlyThemselves() throws Exception {
+        passport("MAP", 12);
+
+        List<DeviceImportResultVO> results = register("""
+                [
+                  {"deviceSerialNumber": "MAP1", "purchaseDate": "2024-13-45"},
+                  null,
+                  42,
+                  {"deviceSerialNumber": "MAP2", "purchaseDate": "2024-01-01"}
+                ]
+                """);
+
+        assertEquals(4, results.size());
+        assertEquals(3, results.stream().filter(r -> r.error() != null).count());
+        assertEquals("MAP1", results.get(0).serialNumber());
+        assertTrue(deviceRepository.existsById("MAP2"));
+    }
+
+    @Test
+    void registerDevices_notAnArray_throws() {
+        assertThrows(CustomException.class, () -> register("{\"deviceSerialNumber\": \"X1\"}"));
+    }
+}
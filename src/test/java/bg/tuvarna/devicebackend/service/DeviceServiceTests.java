@@ -2,6 +2,7 @@ package bg.tuvarna.devicebackend.service;
 
 import bg.tuvarna.devicebackend.controllers.exceptions.CustomException;
 import bg.tuvarna.devicebackend.models.dtos.DeviceCreateVO;
+import bg.tuvarna.devicebackend.models.dtos.DeviceListing;
 import bg.tuvarna.devicebackend.models.dtos.DeviceUpdateVO;
 import bg.tuvarna.devicebackend.models.entities.Device;
 import bg.tuvarna.devicebackend.models.entities.Passport;
@@ -11,6 +12,7 @@ import bg.tuvarna.devicebackend.repositories.DeviceRepository;
 import bg.tuvarna.devicebackend.repositories.PassportRepository;
 import bg.tuvarna.devicebackend.repositories.UserRepository;
 import bg.tuvarna.devicebackend.services.DeviceService;
+import bg.tuvarna.devicebackend.utils.CursorPage;
 import bg.tuvarna.devicebackend.utils.CustomPage;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -20,6 +22,7 @@ import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.ActiveProfiles;
 
 import java.time.LocalDate;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -174,7 +177,7 @@ class DeviceServiceTests {
         deviceRepository.saveAndFlush(d1);
         deviceRepository.saveAndFlush(d2);
 
-        CustomPage<Device> page = deviceService.getDevices(null, 1, 10);
+        CustomPage<DeviceListing> page = deviceService.getDevices(null, 1, 10);
 
         assertNotNull(page);
         assertNotNull(page.getItems());
@@ -201,11 +204,13 @@ class DeviceServiceTests {
         deviceRepository.saveAndFlush(d1);
         deviceRepository.saveAndFlush(d2);
 
-        CustomPage<Device> page = deviceService.getDevices("eee", 1, 10);
+        CustomPage<DeviceListing> page = deviceService.getDevices("eee", 1, 10);
 
         assertNotNull(page);
         assertEquals(1, page.getItems().size());
-        assertEquals("EEE101", page.getItems().get(0).getSerialNumber());
+        assertEquals("EEE101", page.getItems().get(0).serialNumber());
+        assertEquals(p1.getId(), page.getItems().get(0).passport().id());
+        assertEquals(0L, page.getItems().get(0).renovationCount());
     }
 
     @Test
@@ -222,4 +227,76 @@ class DeviceServiceTests {
         assertDoesNotThrow(() -> deviceService.deleteDevice("ABC8888"));
         assertTrue(deviceRepository.findById("ABC8888").isEmpty());
     }
+
+    private void device(Passport p, String serialNumber) {
+        Device d = new Device();
+        d.setSerialNumber(serialNumber);
+        d.setPassport(p);
+        d.setPurchaseDate(LocalDate.of(2024, 1, 1));
+        d.setWarrantyExpirationDate(LocalDate.of(2025, 1, 1));
+        deviceRepository.saveAndFlush(d);
+    }
+
+    @Test
+    void getDevicesAfter_walksAllPagesInSerialOrder() {
+        Passport p = passport("GGG", 1, 9999, 12);
+        for (int i = 5; i >= 1; i--) {
+            device(p, "GGG" + i);
+        }
+
+        CursorPage<DeviceListing> first = deviceService.getDevicesAfter(null, null, 2, false);
+        assertEquals(List.of("GGG1", "GGG2"), first.getItems().stream().map(DeviceListing::serialNumber).toList());
+        assertNotNull(first.getNextCursor());
+        assertNull(first.getTotalItems());
+
+        CursorPage<DeviceListing> second = deviceService.getDevicesAfter(null, first.getNextCursor(), 2, false);
+        assertEquals(List.of("GGG3", "GGG4"), second.getItems().stream().map(DeviceListing::serialNumber).toList());
+
+        CursorPage<DeviceListing> last = deviceService.getDevicesAfter(null, second.getNextCursor(), 2, false);
+        assertEquals(List.of("GGG5"), last.getItems().stream().map(DeviceListing::serialNumber).toList());
+        assertNull(last.getNextCursor());
+    }
+
+    @Test
+    void getDevicesAfter_withSearchAndTotal() {
+        Passport p1 = passport("HHH", 1, 9999, 12);
+        Passport p2 = passport("III", 1, 9999, 12);
+        device(p1, "HHH1");
+        device(p1, "HHH2");
+        device(p2, "III1");
+
+        CursorPage<DeviceListing> page = deviceService.getDevicesAfter("hhh", null, 1, true);
+
+        assertEquals(1, page.getItems().size());
+        assertEquals("HHH1", page.getItems().get(0).serialNumber());
+        assertEquals(2L, page.getTotalItems());
+        assertNotNull(page.getNextCursor());
+    }
+
+    @Test
+    void getDevicesAfter_invalidCursorOrSize_throws() {
+        assertThrows(CustomException.class, () -> deviceService.getDevicesAfter(null, "%%%", 10, false));
+        assertThrows(CustomException.class, () -> deviceService.getDevicesAfter(null, null, 0, false));
+    }
+
+    @Test
+    void getDevices_searchFollowsOwnerAndPassportChanges() {
+        Passport p = passport("JJJ", 1, 9999, 12);
+        User u = user("owner@abv.bg", "0888111222");
+        deviceService.registerDevice("JJJ1", LocalDate.of(2024, 1, 1), u);
+
+        assertEquals(1, deviceService.getDevices("owner@abv", 1, 10).getItems().size());
+
+        User owner = userRepository.findById(u.getId()).orElseThrow();
+        owner.setEmail("renamed@abv.bg");
+        userRepository.saveAndFlush(owner);
+        deviceRepository.refreshSearchDocumentsOfUser(owner.getId());
+        p.setModel("Boiler X");
+        passportRepository.saveAndFlush(p);
+        deviceRepository.refreshSearchDocumentsOfPassport(p.getId());
+
+        assertEquals(0, deviceService.getDevices("owner@abv", 1, 10).getItems().size());
+        assertEquals(1, deviceService.getDevices("renamed@abv", 1, 10).getItems().size());
+        assertEquals(1, deviceService.getDevices("boiler x", 1, 10).getItems().size());
+    }
 }
@@ -0,0 +1,88 @@
+package bg.tuvarna.devicebackend.service;
+
+import bg.tuvarna.devicebackend.config.JwtKeyRing;
+import bg.tuvarna.devicebackend.config.JwtService;
+import bg.tuvarna.devicebackend.models.entities.User;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.io.Encoders;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwtKeyRingTests {
+    @TempDir
+    Path dir;
+
+    private static String secret() {
+        return Encoders.BASE64.encode(Keys.secretKeyFor(SignatureAlgorithm.HS256).getEncoded());
+    }
+
+    @Test
+    void sameKeys_tokensAreAcceptedByEveryNode() {
+        String keys = "k1=" + secret();
+        JwtService node1 = new JwtService(new JwtKeyRing("", keys, ""), new SimpleMeterRegistry());
+        JwtService node2 = new JwtService(new JwtKeyRing("", keys, ""), new SimpleMeterRegistry());
+
+        String token = node1.generateToken(User.builder().id(4L).build());
+
+        assertEquals("4", node2.parseClaims(token).getSubject());
+    }
+
+    @Test
+    void reload_rotatesSigningKeyAndKeepsOldTokensValid() throws Exception {
+        Path file = dir.resolve("jwt-keys.properties");
+        String oldSecret = secret();
+        Files.writeString(file, "signing-key-id=k1\nk1=" + oldSecret + "\n");
+        JwtKeyRing ring = new JwtKeyRing(file.toString(), "", "");
+        JwtService jwtService = new JwtService(ring, new SimpleMeterRegistry());
+        String oldToken = jwtService.generateToken(User.builder().id(1L).build());
+
+        Files.writeString(file, "signing-key-id=k2\nk1=" + oldSecret + "\nk2=" + secret() + "\n");
+        ring.reload();
+        String newToken = jwtService.generateToken(User.builder().id(2L).build());
+
+        assertEquals("k2", ring.signingKeyId());
+        assertEquals("1", jwtService.parseClaims(oldToken).getSubject());
+        assertEquals("2", jwtService.parseClaims(newToken).getSubject());
+
+        Files.writeString(file, "signing-key-id=k2\nk2=" + Files.readString(file).split("k2=")[1]);
+        ring.reload();
+
+        assertThrows(Exception.class, () -> jwtService.parseClaims(oldToken));
+        assertEquals("2", jwtService.parseClaims(newToken).getSubject());
+    }
+
+    @Test
+    void reload_brokenFile_keepsCurrentKeys() throws Exception {
+        Path file = dir.resolve("jwt-keys.properties");
+        Files.writeString(file, "k1=" + secret() + "\n");
+        JwtKeyRing ring = new JwtKeyRing(file.toString(), "", "");
+
+        Files.writeString(file, "signing-key-id=missing\nk1=" + secret() + "\n");
+        ring.reload();
+
+        assertEquals("k1", ring.signingKeyId());
+        assertNotNull(ring.verificationKey("k1"));
+    }
+
+    @Test
+    void severalKeysWithoutSigningKeyId_failsFast() {
+        assertThrows(IllegalStateException.class, () -> new JwtKeyRing("", "k1=" + secret() + ",k2=" + secret(), ""));
+    }
+
+    @Test
+    void unknownKeyId_isRejected() {
+        JwtService issuer = new JwtService(JwtKeyRing.ephemeral(), new SimpleMeterRegistry());
+        JwtService other = new JwtService(JwtKeyRing.ephemeral(), new SimpleMeterRegistry());
+
+        String token = issuer.generateToken(User.builder().id(1L).build());
+
+        assertThrows(Exception.class, () -> other.parseClaims(token));
+    }
+}
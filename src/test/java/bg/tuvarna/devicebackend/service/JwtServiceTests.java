@@ -3,11 +3,16 @@ package bg.tuvarna.devicebackend.service;
 import bg.tuvarna.devicebackend.config.JwtService;
 import bg.tuvarna.devicebackend.controllers.exceptions.CustomException;
 import bg.tuvarna.devicebackend.models.entities.User;
+import bg.tuvarna.devicebackend.models.enums.UserRole;
+import io.jsonwebtoken.Claims;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.ActiveProfiles;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 @SpringBootTest
@@ -68,4 +73,45 @@ class JwtServiceTests {
         assertTrue(jwtService.isTokenValid(token, user));
     }
 
+    @Test
+    void parseClaims_validToken_returnsVerifiedClaims() {
+        User owner = User.builder().id(7L).build();
+        User other = User.builder().id(8L).build();
+
+        Claims claims = jwtService.parseClaims(jwtService.generateToken(owner));
+
+        assertNotNull(claims);
+        assertEquals("7", claims.getSubject());
+        assertTrue(jwtService.isTokenValid(claims, owner));
+        assertFalse(jwtService.isTokenValid(claims, other));
+    }
+
+    @Test
+    void parseClaims_malformedToken_throws() {
+        assertThrows(CustomException.class, () -> jwtService.parseClaims("not.a.jwt"));
+    }
+
+    @Test
+    void extractPrincipal_readsRoleAndVersionClaims() {
+        User user = User.builder().id(9L).build();
+        String token = jwtService.generateToken(
+                new HashMap<>(Map.of(JwtService.ROLE_CLAIM, "ADMIN", JwtService.VERSION_CLAIM, 2)),
+                user
+        );
+
+        Claims claims = jwtService.parseClaims(token);
+        User principal = jwtService.extractPrincipal(claims);
+
+        assertEquals(9L, principal.getId());
+        assertEquals(UserRole.ADMIN, principal.getRole());
+        assertEquals(Integer.valueOf(2), jwtService.extractVersion(claims));
+    }
+
+    @Test
+    void extractPrincipal_withoutRoleClaim_returnsNull() {
+        Claims claims = jwtService.parseClaims(jwtService.generateToken(User.builder().id(9L).build()));
+
+        assertNull(jwtService.extractPrincipal(claims));
+        assertNull(jwtService.extractVersion(claims));
+    }
 }
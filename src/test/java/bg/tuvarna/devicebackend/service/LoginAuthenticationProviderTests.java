@@ -0,0 +1,95 @@
+package bg.tuvarna.devicebackend.service;
+
+import bg.tuvarna.devicebackend.config.CostAwareBCryptPasswordEncoder;
+import bg.tuvarna.devicebackend.config.LoginAuthenticationProvider;
+import bg.tuvarna.devicebackend.models.dtos.UserCredentialsVO;
+import bg.tuvarna.devicebackend.models.entities.User;
+import bg.tuvarna.devicebackend.models.enums.UserRole;
+import bg.tuvarna.devicebackend.repositories.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class LoginAuthenticationProviderTests {
+    private UserRepository repo;
+    private PasswordEncoder encoder;
+    private LoginAuthenticationProvider provider;
+
+    @BeforeEach
+    void setUp() {
+        repo = mock(UserRepository.class);
+        encoder = new BCryptPasswordEncoder(4);
+        provider = new LoginAuthenticationProvider(repo, encoder);
+    }
+
+    @Test
+    void authenticate_validCredentials_returnsSlimPrincipalWithSingleLookup() {
+        when(repo.findCredentialsByUsername("gosho@abv.bg")).thenReturn(Optional.of(
+                new UserCredentialsVO(1L, "Gosho", "Varna", "0888", "gosho@abv.bg", encoder.encode("secret"), UserRole.USER)
+        ));
+
+        Authentication result = provider.authenticate(UsernamePasswordAuthenticationToken.unauthenticated("gosho@abv.bg", "secret"));
+
+        User principal = (User) result.getPrincipal();
+        assertTrue(result.isAuthenticated());
+        assertEquals(1L, principal.getId());
+        assertNull(principal.getPassword());
+        assertNull(principal.getDevices());
+        verify(repo, times(1)).findCredentialsByUsername("gosho@abv.bg");
+        verifyNoMoreInteractions(repo);
+    }
+
+    @Test
+    void authenticate_hashWithDifferentCost_isReplaced() {
+        String oldHash = new BCryptPasswordEncoder(5).encode("secret");
+        when(repo.findCredentialsByUsername("gosho@abv.bg")).thenReturn(Optional.of(
+                new UserCredentialsVO(1L, "Gosho", "Varna", "0888", "gosho@abv.bg", oldHash, UserRole.USER)
+        ));
+        LoginAuthenticationProvider upgrading = new LoginAuthenticationProvider(repo, new CostAwareBCryptPasswordEncoder(4));
+
+        upgrading.authenticate(UsernamePasswordAuthenticationToken.unauthenticated("gosho@abv.bg", "secret"));
+
+        ArgumentCaptor<String> newHash = ArgumentCaptor.forClass(String.class);
+        verify(repo).replacePassword(eq(1L), eq(oldHash), newHash.capture());
+        assertTrue(newHash.getValue().startsWith("$2a$04$"));
+        assertTrue(encoder.matches("secret", newHash.getValue()));
+    }
+
+    @Test
+    void costAwareEncoder_upgradesOnAnyCostChange() {
+        CostAwareBCryptPasswordEncoder cost10 = new CostAwareBCryptPasswordEncoder(10);
+
+        assertTrue(cost10.upgradeEncoding(new BCryptPasswordEncoder(4).encode("secret")));
+        assertTrue(cost10.upgradeEncoding(new BCryptPasswordEncoder(11).encode("secret")));
+        assertFalse(cost10.upgradeEncoding(cost10.encode("secret")));
+        assertFalse(cost10.upgradeEncoding("not-a-bcrypt-hash"));
+    }
+
+    @Test
+    void authenticate_wrongPassword_throws() {
+        when(repo.findCredentialsByUsername("gosho@abv.bg")).thenReturn(Optional.of(
+                new UserCredentialsVO(1L, "Gosho", "Varna", "0888", "gosho@abv.bg", encoder.encode("secret"), UserRole.USER)
+        ));
+
+        assertThrows(BadCredentialsException.class,
+                () -> provider.authenticate(UsernamePasswordAuthenticationToken.unauthenticated("gosho@abv.bg", "wrong")));
+    }
+
+    @Test
+    void authenticate_unknownUser_throws() {
+        when(repo.findCredentialsByUsername("unknown")).thenReturn(Optional.empty());
+
+        assertThrows(BadCredentialsException.class,
+                () -> provider.authenticate(UsernamePasswordAuthenticationToken.unauthenticated("unknown", "secret")));
+    }
+}
@@ -0,0 +1,143 @@
+package bg.tuvarna.devicebackend.service;
+
+import bg.tuvarna.devicebackend.models.dtos.PassportImportResultVO;
+import bg.tuvarna.devicebackend.models.entities.Passport;
+import bg.tuvarna.devicebackend.repositories.PassportRepository;
+import bg.tuvarna.devicebackend.services.PassportImportService;
+import bg.tuvarna.devicebackend.services.PassportIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.Mockito.doThrow;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class PassportImportServiceTests {
+
+    @Autowired private PassportImportService importService;
+    @SpyBean private PassportRepository passportRepository;
+    @Autowired private PassportIndex passportIndex;
+    @Autowired private JdbcTemplate jdbc;
+    @Autowired private TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    void cleanDb() {
+        jdbc.execute("DELETE FROM renovations");
+        jdbc.execute("DELETE FROM devices");
+        jdbc.execute("DELETE FROM passports");
+        passportIndex.rebuild();
+    }
+
+    private static InputStream body(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void rolledBackPassport_neverReachesIndex() {
+        transactionTemplate.executeWithoutResult(status -> {
+            passportRepository.saveAndFlush(Passport.builder()
+                    .name("Drill")
+                    .serialPrefix("RBK")
+                    .fromSerialNumber(1)
+                    .toSerialNumber(100)
+                    .warrantyMonths(12)
+                    .build());
+            status.setRollbackOnly();
+        });
+
+        assertNull(passportIndex.find("RBK50"));
+    }
+
+    @Test
+    void importCsv_insertsRowsAndIndexesThem() throws Exception {
+        List<PassportImportResultVO> results = importService.importPassports(body("""
+                name,model,serialPrefix,warrantyMonths,fromSerialNumber,toSerialNumber
+                Drill,D1,IMP,12,1,100
+                "Saw, circular",S1,IMP,24,101,200
+                """), PassportImportService.TEXT_CSV);
+
+        assertEquals(2, results.size());
+        assertTrue(results.stream().allMatch(r -> r.id() != null && r.error() == null));
+        assertEquals(2, passportRepository.count());
+        assertEquals("Saw, circular", passportIndex.find("IMP150").getName());
+    }
+
+    @Test
+    void importNdjson_reportsOverlapsWithinBatchAndExisting() throws Exception {
+        importService.importPassports(body("""
+                {"name":"Drill","model":"D1","serialPrefix":"NDJ","warrantyMonths":12,"fromSerialNumber":1,"toSerialNumber":100}
+                """), MediaType.APPLICATION_NDJSON);
+
+        List<PassportImportResultVO> results = importService.importPassports(body("""
+                {"name":"Saw","model":"S1","serialPrefix":"NDJ","warrantyMonths":12,"fromSerialNumber":50,"toSerialNumber":60}
+                {"name":"Saw","model":"S1","serialPrefix":"NDJ","warrantyMonths":12,"fromSerialNumber":200,"toSerialNumber":300}
+                {"name":"Saw","model":"S1","serialPrefix":"NDJ","warrantyMonths":12,"fromSerialNumber":150,"toSerialNumber":400}
+                """), MediaType.APPLICATION_NDJSON);
+
+        assertEquals(3, results.size());
+        assertNotNull(results.get(0).error());
+        assertNotNull(results.get(1).id());
+        assertNotNull(results.get(2).error());
+        assertEquals(2, passportRepository.count());
+    }
+
+    @Test
+    void importCsv_invalidRows_reportedPerRow() throws Exception {
+        List<PassportImportResultVO> results = importService.importPassports(body("""
+                Drill,D1,BAD,12,1
+                Drill,D1,BAD,twelve,1,10
+                ,D1,BAD,12,1,10
+                Drill,D1,BAD,12,10,1
+                Drill,D1,BAD,12,1,10
+                """), PassportImportService.TEXT_CSV);
+
+        assertEquals(List.of(1, 2, 3, 4, 5), results.stream().map(PassportImportResultVO::row).toList());
+        assertEquals(4, results.stream().filter(r -> r.error() != null).count());
+        assertNotNull(results.get(4).id());
+    }
+
+    @Test
+    void importCsv_firstRowNamedLikeHeader_isImported() throws Exception {
+        List<PassportImportResultVO> results = importService.importPassports(body("""
+                Nameplate riveter,N1,HDR,12,1,100
+                """), PassportImportService.TEXT_CSV);
+
+        assertEquals(1, results.size());
+        assertNotNull(results.get(0).id());
+        assertEquals("Nameplate riveter", passportIndex.find("HDR50").getName());
+    }
+
+    @Test
+    void failedBatch_releasesItsRangesForLaterRows() throws Exception {
+        doThrow(new DataIntegrityViolationException("boom")).doCallRealMethod().when(passportRepository).saveAll(anyIterable());
+
+        StringBuilder rows = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            rows.append("Drill,D1,REL,12,").append(i * 10 + 1).append(',').append(i * 10 + 10).append('\n');
+        }
+        // Second batch, overlapping a range of the failed first one.
+        rows.append("Drill,D1,REL,12,1,5\n");
+
+        List<PassportImportResultVO> results = importService.importPassports(body(rows.toString()), PassportImportService.TEXT_CSV);
+
+        assertEquals(501, results.size());
+        assertEquals(500, results.stream().filter(r -> r.error() != null).count());
+        assertNotNull(results.get(500).id());
+        assertEquals(1, passportRepository.count());
+    }
+}
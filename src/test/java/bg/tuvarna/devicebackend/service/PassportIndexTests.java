@@ -0,0 +1,180 @@
+package bg.tuvarna.devicebackend.service;
+
+import bg.tuvarna.devicebackend.models.entities.Passport;
+import bg.tuvarna.devicebackend.repositories.PassportRepository;
+import bg.tuvarna.devicebackend.services.PassportIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class PassportIndexTests {
+    private PassportRepository repo;
+    private PassportIndex index;
+
+    @BeforeEach
+    void setUp() {
+        repo = mock(PassportRepository.class);
+        index = new PassportIndex(repo);
+    }
+
+    private Passport passport(long id, String prefix, int from, int to) {
+        return Passport.builder()
+                .id(id)
+                .name("Name" + id)
+                .serialPrefix(prefix)
+                .fromSerialNumber(from)
+                .toSerialNumber(to)
+                .warrantyMonths(12)
+                .build();
+    }
+
+    @Test
+    void rebuild_loadsAllPassports() {
+        when(repo.findAll()).thenReturn(List.of(passport(1, "AA", 1, 10), passport(2, "BB", 1, 10)));
+
+        index.rebuild();
+
+        assertEquals(2, index.size());
+        assertEquals(2L, index.find("BB5").getId());
+    }
+
+    @Test
+    void refresh_picksUpPassportsSavedByOtherInstances() {
+        index.put(passport(1, "AA", 1, 10));
+        when(repo.findAll()).thenReturn(List.of(passport(1, "AA", 1, 10), passport(2, "AA", 11, 20)));
+
+        index.refresh();
+
+        assertEquals(2L, index.find("AA15").getId());
+    }
+
+    @Test
+    void refresh_whenIndexChangesDuringLoad_keepsNewerEntries() {
+        when(repo.findAll()).thenAnswer(inv -> {
+            index.put(passport(2, "AA", 11, 20));
+            return List.of(passport(1, "AA", 1, 10));
+        });
+
+        index.refresh();
+
+        assertEquals(2L, index.find("AA15").getId());
+    }
+
+    @Test
+    void find_rangeBoundaries_areInclusive() {
+        index.put(passport(1, "AA", 10, 20));
+
+        assertEquals(1L, index.find("AA10").getId());
+        assertEquals(1L, index.find("AA20").getId());
+        assertNull(index.find("AA9"));
+        assertNull(index.find("AA21"));
+    }
+
+    @Test
+    void find_picksRangeAmongSeveral() {
+        index.put(passport(1, "AA", 1, 10));
+        index.put(passport(2, "AA", 11, 20));
+        index.put(passport(3, "AA", 50, 60));
+
+        assertEquals(2L, index.find("AA15").getId());
+        assertEquals(3L, index.find("AA55").getId());
+        assertNull(index.find("AA30"));
+    }
+
+    @Test
+    void find_longestPrefixWins() {
+        index.put(passport(1, "A", 1, 999999));
+        index.put(passport(2, "AB", 1, 999));
+
+        assertEquals(2L, index.find("AB12").getId());
+        assertEquals(1L, index.find("A12").getId());
+    }
+
+    @Test
+    void find_nonNumericSuffix_returnsNull() {
+        index.put(passport(1, "AA", 1, 10));
+
+        assertNull(index.find("AAxx"));
+        assertNull(index.find("AA"));
+        assertNull(index.find(null));
+    }
+
+    @Test
+    void put_sameId_movesRange() {
+        index.put(passport(1, "AA", 1, 10));
+        index.put(passport(1, "BB", 1, 10));
+
+        assertNull(index.find("AA5"));
+        assertEquals(1L, index.find("BB5").getId());
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    void put_overlappingRange_keepsBothAndLowerIdWins() {
+        index.put(passport(2, "AA", 50, 150));
+        index.put(passport(1, "AA", 1, 100));
+
+        assertEquals(1L, index.find("AA60").getId());
+        assertEquals(1L, index.find("AA10").getId());
+        assertEquals(2L, index.find("AA120").getId());
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    void put_rangeReachingPastItsCeiling_switchesToOverlapLookup() {
+        index.put(passport(1, "AA", 50, 60));
+        index.put(passport(2, "AA", 10, 20));
+        index.put(passport(3, "AA", 30, 200));
+
+        assertEquals(3L, index.find("AA150").getId());
+        assertEquals(1L, index.find("AA55").getId());
+        assertEquals(2L, index.find("AA15").getId());
+    }
+
+    @Test
+    void put_enclosedRange_switchesToOverlapLookup() {
+        index.put(passport(1, "AA", 10, 100));
+        index.put(passport(2, "AA", 20, 30));
+
+        assertEquals(1L, index.find("AA50").getId());
+        assertEquals(1L, index.find("AA25").getId());
+    }
+
+    @Test
+    void rebuild_keepsEnclosedLegacyRanges() {
+        when(repo.findAll()).thenReturn(List.of(passport(1, "AA", 1, 100), passport(2, "AA", 50, 60)));
+
+        index.rebuild();
+
+        assertEquals(1L, index.find("AA70").getId());
+        assertEquals(1L, index.find("AA55").getId());
+        assertEquals(2, index.findOverlapping("AA", 55, 55).size());
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    void remove_lastOverlap_restoresFloorLookup() {
+        index.put(passport(1, "AA", 1, 100));
+        index.put(passport(2, "AA", 50, 60));
+
+        index.remove(1L);
+
+        assertNull(index.find("AA70"));
+        assertEquals(2L, index.find("AA55").getId());
+    }
+
+    @Test
+    void remove_dropsRange() {
+        index.put(passport(1, "AA", 1, 10));
+
+        index.remove(1L);
+
+        assertNull(index.find("AA5"));
+        assertEquals(0, index.size());
+    }
+}
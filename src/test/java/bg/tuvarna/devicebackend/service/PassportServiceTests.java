@@ -4,14 +4,20 @@ import bg.tuvarna.devicebackend.controllers.exceptions.CustomException;
 import bg.tuvarna.devicebackend.models.dtos.PassportCreateVO;
 import bg.tuvarna.devicebackend.models.dtos.PassportUpdateVO;
 import bg.tuvarna.devicebackend.models.entities.Passport;
+import bg.tuvarna.devicebackend.repositories.DeviceRepository;
 import bg.tuvarna.devicebackend.repositories.PassportRepository;
+import bg.tuvarna.devicebackend.services.AdminSearchIndex;
+import bg.tuvarna.devicebackend.services.PassportIndex;
 import bg.tuvarna.devicebackend.services.PassportService;
+import bg.tuvarna.devicebackend.services.PassportWriteLock;
 import bg.tuvarna.devicebackend.utils.CustomPage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -23,7 +29,8 @@ class PassportServiceTests {
     @Test
     void create_whenOverlap_throws() {
         PassportRepository repo = mock(PassportRepository.class);
-        PassportService service = new PassportService(repo);
+        PassportIndex index = new PassportIndex(repo);
+        PassportService service = new PassportService(repo, index, mock(DeviceRepository.class), mock(AdminSearchIndex.class), PassportWriteLock.local(), new SimpleMeterRegistry());
 
         PassportCreateVO vo = new PassportCreateVO(
                 "Name",
@@ -34,8 +41,61 @@ class PassportServiceTests {
                 100
         );
 
-        when(repo.findByFromSerialNumberBetween(eq("PX"), eq(1), eq(100)))
-                .thenReturn(List.of(new Passport()));
+        index.put(Passport.builder().id(1L).serialPrefix("PX").fromSerialNumber(50).toSerialNumber(150).build());
+
+        assertThrows(CustomException.class, () -> service.create(vo));
+        verify(repo, never()).save(any());
+    }
+
+    @Test
+    void create_whenOverlapOnlyInDatabase_throws() {
+        PassportRepository repo = mock(PassportRepository.class);
+        PassportService service = new PassportService(repo, new PassportIndex(repo), mock(DeviceRepository.class), mock(AdminSearchIndex.class), PassportWriteLock.local(), new SimpleMeterRegistry());
+
+        // Saved by another instance, this node's index hasn't seen it yet.
+        when(repo.findOverlapping("PX", 1, 100))
+                .thenReturn(List.of(Passport.builder().id(1L).serialPrefix("PX").fromSerialNumber(50).toSerialNumber(150).build()));
+
+        assertThrows(CustomException.class, () -> service.create(new PassportCreateVO("Name", "Model", "PX", 12, 1, 100)));
+        verify(repo, never()).save(any());
+    }
+
+    @Test
+    void create_whenExistingRangeEnclosesNewOne_throws() {
+        PassportRepository repo = mock(PassportRepository.class);
+        PassportIndex index = new PassportIndex(repo);
+        PassportService service = new PassportService(repo, index, mock(DeviceRepository.class), mock(AdminSearchIndex.class), PassportWriteLock.local(), new SimpleMeterRegistry());
+
+        index.put(Passport.builder().id(1L).serialPrefix("PX").fromSerialNumber(1).toSerialNumber(1000).build());
+
+        PassportCreateVO vo = new PassportCreateVO("Name", "Model", "PX", 12, 100, 200);
+
+        assertThrows(CustomException.class, () -> service.create(vo));
+        verify(repo, never()).save(any());
+    }
+
+    @Test
+    void create_whenOtherPrefixOrAdjacentRange_saves() {
+        PassportRepository repo = mock(PassportRepository.class);
+        PassportIndex index = new PassportIndex(repo);
+        PassportService service = new PassportService(repo, index, mock(DeviceRepository.class), mock(AdminSearchIndex.class), PassportWriteLock.local(), new SimpleMeterRegistry());
+
+        index.put(Passport.builder().id(1L).serialPrefix("PX").fromSerialNumber(1).toSerialNumber(99).build());
+        index.put(Passport.builder().id(2L).serialPrefix("PY").fromSerialNumber(1).toSerialNumber(1000).build());
+        when(repo.save(any())).thenAnswer(inv -> inv.getArgument(0));
+
+        PassportCreateVO vo = new PassportCreateVO("Name", "Model", "PX", 12, 100, 200);
+
+        assertNotNull(service.create(vo));
+        verify(repo, times(1)).save(any());
+    }
+
+    @Test
+    void create_whenFromGreaterThanTo_throws() {
+        PassportRepository repo = mock(PassportRepository.class);
+        PassportService service = new PassportService(repo, new PassportIndex(repo), mock(DeviceRepository.class), mock(AdminSearchIndex.class), PassportWriteLock.local(), new SimpleMeterRegistry());
+
+        PassportCreateVO vo = new PassportCreateVO("Name", "Model", "PX", 12, 200, 100);
 
         assertThrows(CustomException.class, () -> service.create(vo));
         verify(repo, never()).save(any());
@@ -44,7 +104,7 @@ class PassportServiceTests {
     @Test
     void update_whenNotFound_throws() {
         PassportRepository repo = mock(PassportRepository.class);
-        PassportService service = new PassportService(repo);
+        PassportService service = new PassportService(repo, new PassportIndex(repo), mock(DeviceRepository.class), mock(AdminSearchIndex.class), PassportWriteLock.local(), new SimpleMeterRegistry());
 
         when(repo.findById(1L)).thenReturn(Optional.empty());
 
@@ -54,7 +114,8 @@ class PassportServiceTests {
     @Test
     void update_whenOverlapWithOtherId_throws() {
         PassportRepository repo = mock(PassportRepository.class);
-        PassportService service = new PassportService(repo);
+        PassportIndex index = new PassportIndex(repo);
+        PassportService service = new PassportService(repo, index, mock(DeviceRepository.class), mock(AdminSearchIndex.class), PassportWriteLock.local(), new SimpleMeterRegistry());
 
         Passport existing = new Passport();
         existing.setId(10L);
@@ -65,11 +126,14 @@ class PassportServiceTests {
 
         Passport other = new Passport();
         other.setId(11L);
+        other.setSerialPrefix("PX");
+        other.setFromSerialNumber(101);
+        other.setToSerialNumber(200);
 
         when(repo.findById(10L)).thenReturn(Optional.of(existing));
 
-        when(repo.findByFromSerialNumberBetween(anyString(), anyInt(), anyInt()))
-                .thenReturn(List.of(other));
+        index.put(existing);
+        index.put(other);
 
         PassportUpdateVO vo = new PassportUpdateVO(
                 null,   // name
@@ -77,7 +141,7 @@ class PassportServiceTests {
                 "PX",   // serialPrefix
                 12,     // warrantyMonths
                 1,      // fromSerialNumber
-                100     // toSerialNumber
+                150     // toSerialNumber
         );
 
         assertThrows(CustomException.class, () ->
@@ -86,10 +150,29 @@ class PassportServiceTests {
     }
 
 
+    @Test
+    void update_whenOverlapOnlyInDatabase_throws() {
+        PassportRepository repo = mock(PassportRepository.class);
+        PassportIndex index = new PassportIndex(repo);
+        PassportService service = new PassportService(repo, index, mock(DeviceRepository.class), mock(AdminSearchIndex.class), PassportWriteLock.local(), new SimpleMeterRegistry());
+
+        Passport existing = Passport.builder().id(10L).serialPrefix("PX").fromSerialNumber(1).toSerialNumber(100).warrantyMonths(12).build();
+        // Saved by another instance, this node's index only holds the passport being updated.
+        Passport other = Passport.builder().id(11L).serialPrefix("PX").fromSerialNumber(101).toSerialNumber(200).build();
+
+        when(repo.findById(10L)).thenReturn(Optional.of(existing));
+        when(repo.findOverlapping("PX", 1, 150)).thenReturn(List.of(existing, other));
+        index.put(existing);
+
+        assertThrows(CustomException.class, () -> service.update(10L, new PassportUpdateVO(null, null, null, null, null, 150)));
+        verify(repo, never()).save(any());
+    }
+
     @Test
     void findPassportBySerialId_invalidNumeric_throws() {
         PassportRepository repo = mock(PassportRepository.class);
-        PassportService service = new PassportService(repo);
+        PassportIndex index = new PassportIndex(repo);
+        PassportService service = new PassportService(repo, index, mock(DeviceRepository.class), mock(AdminSearchIndex.class), PassportWriteLock.local(), new SimpleMeterRegistry());
 
         Passport p = new Passport();
         p.setId(1L);
@@ -97,7 +180,7 @@ class PassportServiceTests {
         p.setFromSerialNumber(1);
         p.setToSerialNumber(9999);
 
-        when(repo.findByFromSerial("AAAxx")).thenReturn(List.of(p));
+        index.put(p);
 
         assertThrows(CustomException.class, () -> service.findPassportBySerialId("AAAxx"));
     }
@@ -105,7 +188,8 @@ class PassportServiceTests {
     @Test
     void findPassportBySerialId_noMatch_throws() {
         PassportRepository repo = mock(PassportRepository.class);
-        PassportService service = new PassportService(repo);
+        PassportIndex index = new PassportIndex(repo);
+        PassportService service = new PassportService(repo, index, mock(DeviceRepository.class), mock(AdminSearchIndex.class), PassportWriteLock.local(), new SimpleMeterRegistry());
 
         Passport p = new Passport();
         p.setId(1L);
@@ -113,15 +197,67 @@ class PassportServiceTests {
         p.setFromSerialNumber(1);
         p.setToSerialNumber(10);
 
-        when(repo.findByFromSerial("AAA999")).thenReturn(List.of(p));
+        index.put(p);
 
         assertThrows(CustomException.class, () -> service.findPassportBySerialId("AAA999"));
     }
 
+    @Test
+    void findPassportBySerialId_inRange_returnsPassportWithoutQuery() {
+        PassportRepository repo = mock(PassportRepository.class);
+        PassportIndex index = new PassportIndex(repo);
+        PassportService service = new PassportService(repo, index, mock(DeviceRepository.class), mock(AdminSearchIndex.class), PassportWriteLock.local(), new SimpleMeterRegistry());
+
+        Passport p = new Passport();
+        p.setId(1L);
+        p.setSerialPrefix("AAA");
+        p.setFromSerialNumber(1);
+        p.setToSerialNumber(10);
+
+        index.put(p);
+
+        assertEquals(1L, service.findPassportBySerialId("AAA7").getId());
+        verify(repo, never()).findByFromSerial(anyString());
+    }
+
+    @Test
+    void findPassportBySerialId_recordsResolutionOnInjectedRegistry() {
+        PassportRepository repo = mock(PassportRepository.class);
+        PassportIndex index = new PassportIndex(repo);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        PassportService service = new PassportService(repo, index, mock(DeviceRepository.class), mock(AdminSearchIndex.class), PassportWriteLock.local(), registry);
+
+        index.put(Passport.builder().id(1L).serialPrefix("AAA").fromSerialNumber(1).toSerialNumber(10).build());
+        service.findPassportBySerialId("AAA7");
+
+        assertEquals(1, registry.get("passport.resolution").timer().count());
+    }
+
+    @Test
+    void findPassportsBySerialIds_returnsOnlyMatches() {
+        PassportRepository repo = mock(PassportRepository.class);
+        PassportIndex index = new PassportIndex(repo);
+        PassportService service = new PassportService(repo, index, mock(DeviceRepository.class), mock(AdminSearchIndex.class), PassportWriteLock.local(), new SimpleMeterRegistry());
+
+        Passport p = new Passport();
+        p.setId(1L);
+        p.setSerialPrefix("AAA");
+        p.setFromSerialNumber(1);
+        p.setToSerialNumber(10);
+
+        index.put(p);
+
+        Map<String, Passport> result = service.findPassportsBySerialIds(List.of("AAA1", "AAA99", "AAA1", "BBB1"));
+
+        assertEquals(1, result.size());
+        assertEquals(1L, result.get("AAA1").getId());
+        verify(repo, never()).findByFromSerial(anyString());
+    }
+
     @Test
     void delete_whenRepoThrows_wrapsToCustomException() {
         PassportRepository repo = mock(PassportRepository.class);
-        PassportService service = new PassportService(repo);
+        PassportService service = new PassportService(repo, new PassportIndex(repo), mock(DeviceRepository.class), mock(AdminSearchIndex.class), PassportWriteLock.local(), new SimpleMeterRegistry());
 
         doThrow(new RuntimeException("boom")).when(repo).deleteById(5L);
 
@@ -132,7 +268,7 @@ class PassportServiceTests {
     @Test
     void getPassports_mapsToCustomPage() {
         PassportRepository repo = mock(PassportRepository.class);
-        PassportService service = new PassportService(repo);
+        PassportService service = new PassportService(repo, new PassportIndex(repo), mock(DeviceRepository.class), mock(AdminSearchIndex.class), PassportWriteLock.local(), new SimpleMeterRegistry());
 
         Passport p1 = new Passport(); p1.setId(1L);
         Passport p2 = new Passport(); p2.setId(2L);
@@ -153,7 +289,7 @@ class PassportServiceTests {
     @Test
     void getPassportsBySerialPrefix_delegates() {
         PassportRepository repo = mock(PassportRepository.class);
-        PassportService service = new PassportService(repo);
+        PassportService service = new PassportService(repo, new PassportIndex(repo), mock(DeviceRepository.class), mock(AdminSearchIndex.class), PassportWriteLock.local(), new SimpleMeterRegistry());
 
         when(repo.findByFromSerial("PX123")).thenReturn(List.of(new Passport()));
 
@@ -164,14 +300,17 @@ class PassportServiceTests {
     @Test
     void update_whenNoOverlap_updatesSuccessfully() {
         PassportRepository repo = mock(PassportRepository.class);
-        PassportService service = new PassportService(repo);
+        PassportIndex index = new PassportIndex(repo);
+        PassportService service = new PassportService(repo, index, mock(DeviceRepository.class), mock(AdminSearchIndex.class), PassportWriteLock.local(), new SimpleMeterRegistry());
 
         Passport existing = new Passport();
         existing.setId(1L);
+        existing.setSerialPrefix("PX");
+        existing.setFromSerialNumber(1);
+        existing.setToSerialNumber(50);
 
         when(repo.findById(1L)).thenReturn(Optional.of(existing));
-        when(repo.findByFromSerialNumberBetween(anyString(), anyInt(), anyInt()))
-                .thenReturn(List.of(existing));
+        index.put(existing);
         when(repo.save(any())).thenReturn(existing);
 
         PassportUpdateVO vo = new PassportUpdateVO(
@@ -188,10 +327,31 @@ class PassportServiceTests {
         assertNotNull(result);
     }
 
+    @Test
+    void update_refreshesDeviceSearchDocuments() {
+        PassportRepository repo = mock(PassportRepository.class);
+        DeviceRepository deviceRepository = mock(DeviceRepository.class);
+        PassportIndex index = new PassportIndex(repo);
+        PassportService service = new PassportService(repo, index, deviceRepository, mock(AdminSearchIndex.class), PassportWriteLock.local(), new SimpleMeterRegistry());
+
+        Passport existing = new Passport();
+        existing.setId(1L);
+        existing.setSerialPrefix("PX");
+        existing.setFromSerialNumber(1);
+        existing.setToSerialNumber(50);
+
+        when(repo.findById(1L)).thenReturn(Optional.of(existing));
+        when(repo.save(any())).thenReturn(existing);
+
+        service.update(1L, new PassportUpdateVO("Renamed", null, null, null, null, null));
+
+        verify(deviceRepository).refreshSearchDocumentsOfPassport(1L);
+    }
+
     @Test
     void create_whenRepoThrows_wrapsException() {
         PassportRepository repo = mock(PassportRepository.class);
-        PassportService service = new PassportService(repo);
+        PassportService service = new PassportService(repo, new PassportIndex(repo), mock(DeviceRepository.class), mock(AdminSearchIndex.class), PassportWriteLock.local(), new SimpleMeterRegistry());
 
         when(repo.save(any()))
                 .thenThrow(new RuntimeException("DB"));
@@ -0,0 +1,81 @@
+package bg.tuvarna.devicebackend.service;
+
+import bg.tuvarna.devicebackend.config.PasswordHashingExecutor;
+import bg.tuvarna.devicebackend.controllers.exceptions.ErrorCode;
+import bg.tuvarna.devicebackend.controllers.exceptions.OverloadedException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PasswordHashingExecutorTests {
+    private SimpleMeterRegistry registry;
+    private PasswordHashingExecutor executor;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        executor = new PasswordHashingExecutor(registry, 1, 1, 3);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.destroy();
+    }
+
+    @Test
+    void matches_runsTaskAndRecordsLatency() {
+        assertTrue(executor.matches(() -> true));
+        assertEquals("hash", executor.encode(() -> "hash"));
+
+        assertEquals(1, registry.get("password.hashing").tag("operation", "matches").timer().count());
+        assertEquals(1, registry.get("password.hashing").tag("operation", "encode").timer().count());
+    }
+
+    @Test
+    void fullQueue_shedsWithRetryAfter() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<Boolean> running = CompletableFuture.supplyAsync(() -> executor.matches(() -> {
+            started.countDown();
+            await(release);
+            return true;
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Boolean> queued = CompletableFuture.supplyAsync(() -> executor.matches(() -> true));
+        while (registry.get("password.hashing.queue.size").gauge().value() < 1) {
+            Thread.onSpinWait();
+        }
+
+        OverloadedException ex = assertThrows(OverloadedException.class, () -> executor.matches(() -> true));
+        assertEquals(ErrorCode.Overloaded, ex.getErrorCode());
+        assertEquals(3, ex.getRetryAfterSeconds());
+        assertEquals(1, registry.get("password.hashing.rejected").counter().count());
+
+        release.countDown();
+        assertTrue(running.get(5, TimeUnit.SECONDS));
+        assertTrue(queued.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void taskException_isRethrown() {
+        assertThrows(IllegalArgumentException.class, () -> executor.encode(() -> {
+            throw new IllegalArgumentException("boom");
+        }));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package bg.tuvarna.devicebackend.service;
+
+import bg.tuvarna.devicebackend.models.dtos.PrincipalVO;
+import bg.tuvarna.devicebackend.models.enums.UserRole;
+import bg.tuvarna.devicebackend.repositories.UserRepository;
+import bg.tuvarna.devicebackend.services.PrincipalCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class PrincipalCacheTests {
+    private UserRepository repo;
+    private PrincipalCache cache;
+
+    @BeforeEach
+    void setUp() {
+        repo = mock(UserRepository.class);
+        cache = new PrincipalCache(repo, Duration.ofMinutes(5), 100);
+    }
+
+    @Test
+    void get_loadsOnceAndServesFromCache() {
+        when(repo.findPrincipalById(1L)).thenReturn(Optional.of(new PrincipalVO(1L, UserRole.USER, "u@abv.bg", 0)));
+
+        PrincipalVO first = cache.get(1L);
+        PrincipalVO second = cache.get(1L);
+
+        assertEquals(first, second);
+        assertEquals(UserRole.USER, second.toUser().getRole());
+        verify(repo, times(1)).findPrincipalById(1L);
+    }
+
+    @Test
+    void evict_forcesReload() {
+        when(repo.findPrincipalById(1L))
+                .thenReturn(Optional.of(new PrincipalVO(1L, UserRole.USER, "old@abv.bg", 0)))
+                .thenReturn(Optional.of(new PrincipalVO(1L, UserRole.USER, "new@abv.bg", 0)));
+
+        cache.get(1L);
+        cache.evict(1L);
+
+        assertEquals("new@abv.bg", cache.get(1L).email());
+    }
+
+    @Test
+    void get_unknownUser_throwsAndIsNotCached() {
+        when(repo.findPrincipalById(2L)).thenReturn(Optional.empty());
+
+        assertThrows(UsernameNotFoundException.class, () -> cache.get(2L));
+        assertThrows(UsernameNotFoundException.class, () -> cache.get(2L));
+        verify(repo, times(2)).findPrincipalById(2L);
+    }
+}
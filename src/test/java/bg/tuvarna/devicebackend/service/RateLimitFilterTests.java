@@ -0,0 +1,97 @@
+package bg.tuvarna.devicebackend.service;
+
+import bg.tuvarna.devicebackend.config.RateLimitFilter;
+import bg.tuvarna.devicebackend.config.RateLimitProperties;
+import bg.tuvarna.devicebackend.utils.TokenBucket;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateLimitFilterTests {
+    private SimpleMeterRegistry registry;
+    private RateLimitFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        RateLimitProperties properties = new RateLimitProperties(
+                true,
+                "X-API-Key",
+                Set.of("partner-key"),
+                Duration.ofMinutes(10),
+                1000,
+                List.of(new RateLimitProperties.Route("/api/v1/devices/exists/**", 2, Duration.ofMinutes(1)))
+        );
+        filter = new RateLimitFilter(properties, registry, new ObjectMapper());
+    }
+
+    private MockHttpServletResponse call(String uri, String address, String apiKey) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", uri);
+        request.setRemoteAddr(address);
+        if (apiKey != null) {
+            request.addHeader("X-API-Key", apiKey);
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+
+    @Test
+    void limitedRoute_rejectsOverCapacityWithRetryAfter() throws Exception {
+        assertEquals(200, call("/api/v1/devices/exists/AA1", "10.0.0.1", null).getStatus());
+        assertEquals(200, call("/api/v1/devices/exists/AA2", "10.0.0.1", null).getStatus());
+
+        MockHttpServletResponse rejected = call("/api/v1/devices/exists/AA3", "10.0.0.1", null);
+
+        assertEquals(429, rejected.getStatus());
+        assertNotNull(rejected.getHeader("Retry-After"));
+        assertEquals(1, registry.get("http.rate_limit.rejected").tag("route", "/api/v1/devices/exists/**").counter().count());
+    }
+
+    @Test
+    void clientsHaveSeparateBuckets() throws Exception {
+        call("/api/v1/devices/exists/AA1", "10.0.0.1", null);
+        call("/api/v1/devices/exists/AA1", "10.0.0.1", null);
+
+        assertEquals(200, call("/api/v1/devices/exists/AA1", "10.0.0.2", null).getStatus());
+        assertEquals(200, call("/api/v1/devices/exists/AA1", "10.0.0.1", "partner-key").getStatus());
+    }
+
+    @Test
+    void unknownApiKeys_shareTheAddressBucket() throws Exception {
+        call("/api/v1/devices/exists/AA1", "10.0.0.1", null);
+        call("/api/v1/devices/exists/AA1", "10.0.0.1", "random-1");
+
+        assertEquals(429, call("/api/v1/devices/exists/AA1", "10.0.0.1", "random-2").getStatus());
+    }
+
+    @Test
+    void otherRoutes_areNotLimited() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            assertEquals(200, call("/api/v1/passports", "10.0.0.1", null).getStatus());
+        }
+    }
+
+    @Test
+    void tokenBucket_refillsEvenlyOverPeriod() {
+        long start = 1_000L;
+        TokenBucket bucket = new TokenBucket(2, Duration.ofSeconds(2), start);
+
+        assertEquals(0, bucket.tryConsume(start));
+        assertEquals(0, bucket.tryConsume(start));
+        assertEquals(Duration.ofSeconds(1).toNanos(), bucket.tryConsume(start));
+
+        assertEquals(0, bucket.tryConsume(start + Duration.ofSeconds(1).toNanos()));
+        assertTrue(bucket.tryConsume(start + Duration.ofSeconds(1).toNanos()) > 0);
+    }
+}
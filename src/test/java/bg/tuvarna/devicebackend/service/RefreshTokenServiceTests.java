@@ -0,0 +1,95 @@
+package bg.tuvarna.devicebackend.service;
+
+import bg.tuvarna.devicebackend.config.JwtService;
+import bg.tuvarna.devicebackend.controllers.exceptions.CustomException;
+import bg.tuvarna.devicebackend.models.dtos.TokenPairVO;
+import bg.tuvarna.devicebackend.models.entities.User;
+import bg.tuvarna.devicebackend.models.enums.UserRole;
+import bg.tuvarna.devicebackend.repositories.RefreshTokenRepository;
+import bg.tuvarna.devicebackend.repositories.UserRepository;
+import bg.tuvarna.devicebackend.services.RefreshTokenService;
+import io.jsonwebtoken.Claims;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class RefreshTokenServiceTests {
+    @Autowired
+    private RefreshTokenService refreshTokenService;
+    @Autowired
+    private RefreshTokenRepository refreshTokenRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private JwtService jwtService;
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        user = userRepository.save(User.builder()
+                .fullName("Refresh User")
+                .email("refresh@abv.bg")
+                .phone("0888999111")
+                .role(UserRole.USER)
+                .build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        refreshTokenRepository.deleteAll();
+        userRepository.deleteById(user.getId());
+    }
+
+    @Test
+    void refresh_rotatesTokenAndIssuesAccessToken() {
+        TokenPairVO session = refreshTokenService.createSession(user);
+
+        TokenPairVO refreshed = refreshTokenService.refresh(session.refreshToken());
+
+        assertNotEquals(session.refreshToken(), refreshed.refreshToken());
+        Claims claims = jwtService.parseClaims(refreshed.token());
+        assertEquals(user.getId().toString(), claims.getSubject());
+        assertEquals("USER", claims.get(JwtService.ROLE_CLAIM));
+    }
+
+    @Test
+    void refresh_tokensAreStoredHashed() {
+        TokenPairVO session = refreshTokenService.createSession(user);
+
+        assertTrue(refreshTokenRepository.findAll().stream()
+                .noneMatch(token -> token.getTokenHash().equals(session.refreshToken())));
+    }
+
+    @Test
+    void refresh_reusedToken_revokesWholeFamily() {
+        TokenPairVO session = refreshTokenService.createSession(user);
+        TokenPairVO rotated = refreshTokenService.refresh(session.refreshToken());
+
+        assertThrows(CustomException.class, () -> refreshTokenService.refresh(session.refreshToken()));
+        assertThrows(CustomException.class, () -> refreshTokenService.refresh(rotated.refreshToken()));
+    }
+
+    @Test
+    void refresh_unknownToken_throws() {
+        assertThrows(CustomException.class, () -> refreshTokenService.refresh("unknown"));
+    }
+
+    @Test
+    void revokeAll_endsEverySession() {
+        TokenPairVO first = refreshTokenService.createSession(user);
+        TokenPairVO second = refreshTokenService.createSession(user);
+
+        refreshTokenService.revokeAll(user.getId());
+
+        assertThrows(CustomException.class, () -> refreshTokenService.refresh(first.refreshToken()));
+        assertThrows(CustomException.class, () -> refreshTokenService.refresh(second.refreshToken()));
+    }
+}
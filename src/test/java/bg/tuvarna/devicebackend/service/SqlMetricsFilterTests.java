@@ -0,0 +1,54 @@
+package bg.tuvarna.devicebackend.service;
+
+import bg.tuvarna.devicebackend.config.SqlMetricsFilter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.ServletOutputStream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SqlMetricsFilterTests {
+    private SqlMetricsFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        filter = new SqlMetricsFilter(new SimpleMeterRegistry(), true, Duration.ofMillis(200), 5, true);
+    }
+
+    @Test
+    void jsonResponse_carriesSqlHeaders() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(new MockHttpServletRequest("GET", "/api/v1/devices"), response, (req, res) -> {
+            res.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            res.getOutputStream().write("{}".getBytes(StandardCharsets.UTF_8));
+        });
+
+        assertEquals("0", response.getHeader(SqlMetricsFilter.COUNT_HEADER));
+        assertEquals("{}", response.getContentAsString());
+    }
+
+    @Test
+    void ndjsonResponse_isFlushedWhileStreaming() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(new MockHttpServletRequest("POST", "/api/v1/devices/bulk"), response, (req, res) -> {
+            res.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+            ServletOutputStream out = res.getOutputStream();
+            out.write("{\"serialNumber\":\"A1\"}\n".getBytes(StandardCharsets.UTF_8));
+            out.flush();
+
+            assertTrue(response.isCommitted());
+            assertEquals("{\"serialNumber\":\"A1\"}\n", response.getContentAsString());
+        });
+
+        assertNull(response.getHeader(SqlMetricsFilter.COUNT_HEADER));
+    }
+}
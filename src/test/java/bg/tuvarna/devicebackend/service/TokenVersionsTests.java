@@ -0,0 +1,52 @@
+package bg.tuvarna.devicebackend.service;
+
+import bg.tuvarna.devicebackend.models.dtos.PrincipalVO;
+import bg.tuvarna.devicebackend.models.enums.UserRole;
+import bg.tuvarna.devicebackend.repositories.UserRepository;
+import bg.tuvarna.devicebackend.services.PrincipalCache;
+import bg.tuvarna.devicebackend.services.TokenVersions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class TokenVersionsTests {
+    private UserRepository repo;
+    private PrincipalCache cache;
+    private TokenVersions versions;
+
+    @BeforeEach
+    void setUp() {
+        repo = mock(UserRepository.class);
+        cache = new PrincipalCache(repo, Duration.ofMinutes(5), 100);
+        versions = new TokenVersions(repo, cache);
+    }
+
+    @Test
+    void revoke_rejectsOlderVersionsOnly() {
+        when(repo.findPrincipalById(1L))
+                .thenReturn(Optional.of(new PrincipalVO(1L, UserRole.USER, "u@abv.bg", 0)))
+                .thenReturn(Optional.of(new PrincipalVO(1L, UserRole.USER, "u@abv.bg", 1)));
+        int minted = versions.current(1L);
+
+        versions.revoke(1L);
+
+        verify(repo).incrementTokenVersion(1L);
+        PrincipalVO principal = cache.get(1L);
+        assertFalse(versions.isCurrent(principal, minted, UserRole.USER));
+        assertTrue(versions.isCurrent(principal, versions.current(1L), UserRole.USER));
+    }
+
+    @Test
+    void isCurrent_roleChanged_rejectsToken() {
+        PrincipalVO principal = new PrincipalVO(1L, UserRole.ADMIN, "u@abv.bg", 0);
+
+        assertFalse(versions.isCurrent(principal, 0, UserRole.USER));
+        assertTrue(versions.isCurrent(principal, 0, UserRole.ADMIN));
+        assertTrue(versions.isCurrent(principal, 0, null));
+    }
+}